@@ -0,0 +1,174 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A size-bounded, least-recently-used cache of generated {@link VaccinationCalendar}s.
+ *
+ * <p>Entries are keyed by a fingerprint of the selection (see {@link VaccineSelector#getSelectionFingerprint()}) and
+ * the date of the first vaccination. The date of birth is only part of the key if the selection has age limits,
+ * since otherwise it doesn't affect the result. Since fingerprints may (very rarely) collide, every hit is checked
+ * against the actual selection.</p>
+ *
+ * <p>Cached calendars are never handed out directly: every call returns a fresh copy, so any later edits made by
+ * the user can't corrupt the cached entry.</p>
+ */
+public class CalendarCache {
+
+    /**
+     * Cache shared by all input {@link Form}s (see {@link Form#createCalendar()}).
+     */
+    private static final CalendarCache defaultCache = new CalendarCache(256);
+
+    private record Key(long selection, int startEpochDay, int birthEpochDay) {
+    }
+
+    /**
+     * Maximum number of cached calendars.
+     */
+    private final int capacity;
+
+    /**
+     * The cached calendars, from least to most recently used.
+     */
+    private final LinkedHashMap<Key, VaccinationCalendar> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache.
+     * @param   capacity
+     *          maximum number of cached calendars.
+     */
+    public CalendarCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, VaccinationCalendar> eldest) {
+                if (size() > CalendarCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return
+     *          the cache shared by all input {@link Form}s.
+     */
+    public static CalendarCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Returns a calendar for the given input, generating (and caching) it if necessary.
+     * @param   input
+     *          the child's data.
+     * @return
+     *          a new calendar, owned by the caller.
+     */
+    public VaccinationCalendar get(CohortInput input) {
+        return get(VaccineSelector.fingerprintOf(input.vaccines()), input);
+    }
+
+    /**
+     * Returns a calendar for the given input, generating (and caching) it if necessary.
+     * @param   selectionFingerprint
+     *          the fingerprint of <code>input.vaccines()</code>, if it's already known.
+     * @param   input
+     *          the child's data.
+     * @return
+     *          a new calendar, owned by the caller.
+     */
+    public VaccinationCalendar get(long selectionFingerprint, CohortInput input) {
+        List<VaccineType> vaccines = input.vaccines();
+        boolean ageLimited = false;
+        for (VaccineType vaccine : vaccines) {
+            ageLimited |= vaccine.getVaccineScheme().compile().isAgeLimited();
+        }
+        TinyDate dateOfBirth = input.dateOfBirth();
+        Key key = new Key(selectionFingerprint, input.dateOfFirstVaccination().toEpochDay(),
+                ageLimited ? dateOfBirth.toEpochDay() : 0);
+
+        VaccinationCalendar cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null && cached.getVaccines().equals(vaccines)) {
+                hits++;
+            } else {
+                cached = null;
+                misses++;
+            }
+        }
+        if (cached == null) {
+            cached = new VaccinationCalendar(input);
+            synchronized (this) {
+                entries.put(key, cached);
+            }
+        }
+        //cached calendars are never modified, so they can be copied without holding the lock
+        return cached.copy();
+    }
+
+    /**
+     * Removes every cached calendar. The counters are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return
+     *          the number of currently cached calendars.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return
+     *          the number of calls answered from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return
+     *          the number of calls which had to generate a new calendar.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return
+     *          the number of calendars evicted to make room for newer ones.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CalendarCache{" +
+                "size=" + entries.size() +
+                ", capacity=" + capacity +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
@@ -0,0 +1,75 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A <strong>CalendarChange</strong> describes a single, consolidated modification of a {@link VaccinationCalendar}:
+ * the set of calendar days whose {@link ScheduleForDay} was added, removed or had its doses changed. A whole batch
+ * of edits (see {@link VaccinationCalendar.Batch}) produces exactly one CalendarChange.
+ */
+public class CalendarChange {
+
+    /**
+     * Epoch days (see {@link TinyDate#toEpochDay()}) of every changed day, sorted and without duplicates.
+     */
+    private final int[] changedEpochDays;
+
+    /**
+     * Constructs a CalendarChange.
+     * @param   changedEpochDays
+     *          epoch days of the changed days, sorted and without duplicates. The array is not copied.
+     */
+    CalendarChange(int[] changedEpochDays) {
+        this.changedEpochDays = changedEpochDays;
+    }
+
+    /**
+     * @return
+     *          the number of changed days.
+     */
+    public int size() {
+        return changedEpochDays.length;
+    }
+
+    /**
+     * Checks whether a given calendar day was affected by this change.
+     * @param   date
+     *          the calendar day.
+     * @return
+     *          <code>true</code> if the doses scheduled for that day may have changed.
+     */
+    public boolean affects(TinyDate date) {
+        return Arrays.binarySearch(changedEpochDays, date.toEpochDay()) >= 0;
+    }
+
+    /**
+     * @return
+     *          a copy of the epoch days of every changed day, sorted from earliest to latest.
+     */
+    public int[] getChangedEpochDays() {
+        return changedEpochDays.clone();
+    }
+
+    /**
+     * @return
+     *          a new list with every changed day, sorted from earliest to latest.
+     */
+    public List<TinyDate> getChangedDates() {
+        List<TinyDate> dates = new ArrayList<>(changedEpochDays.length);
+        for (int epochDay : changedEpochDays) {
+            dates.add(TinyDate.ofEpochDay(epochDay));
+        }
+        return dates;
+    }
+
+    @Override
+    public String toString() {
+        return "CalendarChange{" +
+                "changedDates=" + getChangedDates() +
+                '}';
+    }
+}
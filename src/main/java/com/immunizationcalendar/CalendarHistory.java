@@ -0,0 +1,152 @@
+package com.immunizationcalendar;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Undo/redo history of a {@link VaccinationCalendar}. Every change of the calendar (a single edit, or a whole
+ * {@link VaccinationCalendar.Batch}) becomes one step.
+ *
+ * <p>Each step only keeps the {@link CalendarSnapshot} from before the change and the list of changed days. Since
+ * snapshots share their structure, a step costs O(log n) memory per changed day, and undoing or redoing it only
+ * touches the days it changed.</p>
+ */
+public class CalendarHistory {
+
+    /**
+     * A single step: the state on the other side of a change, and the days that differ.
+     */
+    private record Step(CalendarSnapshot snapshot, int[] changedEpochDays) {
+    }
+
+    private final VaccinationCalendar calendar;
+
+    /**
+     * Maximum number of steps that can be undone.
+     */
+    private final int maxDepth;
+
+    private final Deque<Step> undoSteps = new ArrayDeque<>();
+    private final Deque<Step> redoSteps = new ArrayDeque<>();
+
+    /**
+     * The state of the calendar after the last recorded change.
+     */
+    private CalendarSnapshot current;
+
+    /**
+     * Set while the history itself modifies the calendar, so that undoing isn't recorded as a new change.
+     */
+    private boolean restoring;
+
+    /**
+     * Starts recording the changes of a calendar.
+     * @param   calendar
+     *          the calendar to track.
+     * @param   maxDepth
+     *          maximum number of steps that can be undone. Older steps are forgotten.
+     */
+    public CalendarHistory(VaccinationCalendar calendar, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Depth must be positive");
+        }
+        this.calendar = calendar;
+        this.maxDepth = maxDepth;
+        this.current = calendar.snapshot();
+        calendar.addChangeListener(this::record);
+    }
+
+    private void record(CalendarChange change) {
+        if (restoring) {
+            return;
+        }
+        undoSteps.push(new Step(current, change.getChangedEpochDays()));
+        if (undoSteps.size() > maxDepth) {
+            undoSteps.removeLast();
+        }
+        redoSteps.clear();
+        current = calendar.snapshot();
+    }
+
+    /**
+     * Reverts the last change of the calendar.
+     * @return
+     *          <code>true</code> if something was undone, <code>false</code> if there was nothing to undo.
+     */
+    public boolean undo() {
+        return move(undoSteps, redoSteps);
+    }
+
+    /**
+     * Reapplies the last undone change of the calendar. Any new change of the calendar clears the redo history.
+     * @return
+     *          <code>true</code> if something was redone, <code>false</code> if there was nothing to redo.
+     */
+    public boolean redo() {
+        return move(redoSteps, undoSteps);
+    }
+
+    private boolean move(Deque<Step> from, Deque<Step> to) {
+        Step step = from.poll();
+        if (step == null) {
+            return false;
+        }
+        to.push(new Step(current, step.changedEpochDays()));
+        restoring = true;
+        try {
+            calendar.restore(step.snapshot(), step.changedEpochDays());
+        } finally {
+            restoring = false;
+        }
+        current = calendar.snapshot();
+        return true;
+    }
+
+    /**
+     * @return
+     *          <code>true</code> if {@link #undo()} would do something.
+     */
+    public boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    /**
+     * @return
+     *          <code>true</code> if {@link #redo()} would do something.
+     */
+    public boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * @return
+     *          the number of steps that can currently be undone.
+     */
+    public int getUndoDepth() {
+        return undoSteps.size();
+    }
+
+    /**
+     * @return
+     *          the number of steps that can currently be redone.
+     */
+    public int getRedoDepth() {
+        return redoSteps.size();
+    }
+
+    /**
+     * @return
+     *          maximum number of steps that can be undone.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Forgets every recorded step. The calendar itself is not changed.
+     */
+    public void clear() {
+        undoSteps.clear();
+        redoSteps.clear();
+    }
+}
@@ -0,0 +1,288 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A <strong>CalendarSnapshot</strong> is an immutable version of a {@link VaccinationCalendar}: the {@link Dose}s
+ * scheduled for every day, at a given point in time (see {@link VaccinationCalendar#snapshot()}).
+ *
+ * <p>Snapshots are persistent: internally they're balanced (AVL) trees keyed by epoch day, and every change creates
+ * a new snapshot which copies only the path to the changed day (O(log n) time and space), sharing everything else
+ * with the previous version. Keeping a long history of snapshots therefore costs little more than the edits
+ * themselves.</p>
+ *
+ * <p>The Dose objects are shared, not copied. Only their scheduling is part of the snapshot - the
+ * <code>tempDate</code> of a Dose is user input, and isn't preserved.</p>
+ */
+public final class CalendarSnapshot {
+
+    /**
+     * A (never modified) tree node: a single day, with its doses.
+     */
+    private static final class Node {
+        private final int epochDay;
+        private final Dose[] doses;
+        private final Node left;
+        private final Node right;
+        private final int height;
+
+        private Node(int epochDay, Dose[] doses, Node left, Node right) {
+            this.epochDay = epochDay;
+            this.doses = doses;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+
+    /**
+     * Receives the days of a snapshot, see {@link #forEachDay(DayVisitor)}.
+     */
+    interface DayVisitor {
+        void visit(int epochDay, Dose[] doses);
+    }
+
+    private final Node root;
+
+    /**
+     * Number of days in this snapshot.
+     */
+    private final int size;
+
+    private CalendarSnapshot(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Builds a perfectly balanced snapshot in O(n).
+     * @param   epochDays
+     *          the days, sorted and without duplicates.
+     * @param   doses
+     *          the doses of every day (same index as in <code>epochDays</code>). The arrays are not copied.
+     * @return
+     *          a new snapshot.
+     */
+    static CalendarSnapshot of(int[] epochDays, Dose[][] doses) {
+        return new CalendarSnapshot(build(epochDays, doses, 0, epochDays.length - 1), epochDays.length);
+    }
+
+    /**
+     * @return
+     *          the number of days with at least one scheduled dose.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return
+     *          <code>true</code> if nothing is scheduled.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether anything is scheduled on a given day, in O(log n).
+     * @param   date
+     *          the calendar date.
+     * @return
+     *          <code>true</code> if at least one dose is scheduled on that day.
+     */
+    public boolean contains(TinyDate date) {
+        return get(date.toEpochDay()) != null;
+    }
+
+    /**
+     * Finds the doses scheduled on a given day, in O(log n).
+     * @param   date
+     *          the calendar date.
+     * @return
+     *          a read-only list of the doses, empty if nothing is scheduled on that day.
+     */
+    public List<Dose> getDoses(TinyDate date) {
+        Dose[] doses = get(date.toEpochDay());
+        return doses == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(doses));
+    }
+
+    /**
+     * @return
+     *          a new list with every scheduled day, sorted from earliest to latest.
+     */
+    public List<TinyDate> getDates() {
+        List<TinyDate> dates = new ArrayList<>(size);
+        forEachDay((epochDay, doses) -> dates.add(TinyDate.ofEpochDay(epochDay)));
+        return dates;
+    }
+
+    /**
+     * Performs the given action for every scheduled day, from earliest to latest.
+     * @param   action
+     *          a function receiving the date and a read-only list of its doses.
+     */
+    public void forEach(BiConsumer<TinyDate, List<Dose>> action) {
+        forEachDay((epochDay, doses) -> action.accept(TinyDate.ofEpochDay(epochDay),
+                Collections.unmodifiableList(Arrays.asList(doses))));
+    }
+
+    /**
+     * Visits every scheduled day, from earliest to latest.
+     */
+    void forEachDay(DayVisitor visitor) {
+        forEachDay(root, visitor);
+    }
+
+    /**
+     * @return
+     *          the doses scheduled on the given epoch day (not to be modified), or <code>null</code>.
+     */
+    Dose[] get(int epochDay) {
+        Node node = root;
+        while (node != null) {
+            if (epochDay < node.epochDay) {
+                node = node.left;
+            } else if (epochDay > node.epochDay) {
+                node = node.right;
+            } else {
+                return node.doses;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new version of this snapshot, with the doses of a single day replaced (or added).
+     * @param   epochDay
+     *          the day to change.
+     * @param   doses
+     *          its new doses. The array is not copied.
+     * @return
+     *          the new snapshot.
+     */
+    CalendarSnapshot with(int epochDay, Dose[] doses) {
+        int newSize = get(epochDay) == null ? size + 1 : size;
+        return new CalendarSnapshot(put(root, epochDay, doses), newSize);
+    }
+
+    /**
+     * Creates a new version of this snapshot, without a given day.
+     * @param   epochDay
+     *          the day to remove.
+     * @return
+     *          the new snapshot, or this instance if the day isn't present.
+     */
+    CalendarSnapshot without(int epochDay) {
+        if (get(epochDay) == null) {
+            return this;
+        }
+        return new CalendarSnapshot(remove(root, epochDay), size - 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("CalendarSnapshot{");
+        forEachDay((epochDay, doses) -> {
+            TinyDate.ofEpochDay(epochDay).formatTo(builder).append('=').append(doses.length).append(", ");
+        });
+        if (size > 0) {
+            builder.setLength(builder.length() - 2);
+        }
+        return builder.append('}').toString();
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static Node build(int[] epochDays, Dose[][] doses, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node(epochDays[middle], doses[middle],
+                build(epochDays, doses, from, middle - 1), build(epochDays, doses, middle + 1, to));
+    }
+
+    private static void forEachDay(Node node, DayVisitor visitor) {
+        while (node != null) {
+            forEachDay(node.left, visitor);
+            visitor.visit(node.epochDay, node.doses);
+            node = node.right;
+        }
+    }
+
+    private static Node put(Node node, int epochDay, Dose[] doses) {
+        if (node == null) {
+            return new Node(epochDay, doses, null, null);
+        }
+        if (epochDay < node.epochDay) {
+            return balance(node.epochDay, node.doses, put(node.left, epochDay, doses), node.right);
+        }
+        if (epochDay > node.epochDay) {
+            return balance(node.epochDay, node.doses, node.left, put(node.right, epochDay, doses));
+        }
+        return new Node(epochDay, doses, node.left, node.right);
+    }
+
+    private static Node remove(Node node, int epochDay) {
+        if (epochDay < node.epochDay) {
+            return balance(node.epochDay, node.doses, remove(node.left, epochDay), node.right);
+        }
+        if (epochDay > node.epochDay) {
+            return balance(node.epochDay, node.doses, node.left, remove(node.right, epochDay));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        //replace the removed node with its successor
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.epochDay, successor.doses, node.left, removeFirst(node.right));
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.epochDay, node.doses, removeFirst(node.left), node.right);
+    }
+
+    /**
+     * Creates a node from the given parts, rotating them if the heights of the subtrees differ by more than one.
+     */
+    private static Node balance(int epochDay, Dose[] doses, Node left, Node right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.epochDay, left.doses, left.left, new Node(epochDay, doses, left.right, right));
+            }
+            Node middle = left.right;
+            return new Node(middle.epochDay, middle.doses,
+                    new Node(left.epochDay, left.doses, left.left, middle.left),
+                    new Node(epochDay, doses, middle.right, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.epochDay, right.doses, new Node(epochDay, doses, left, right.left), right.right);
+            }
+            Node middle = right.left;
+            return new Node(middle.epochDay, middle.doses,
+                    new Node(epochDay, doses, left, middle.left),
+                    new Node(right.epochDay, right.doses, middle.right, right.right));
+        }
+        return new Node(epochDay, doses, left, right);
+    }
+}
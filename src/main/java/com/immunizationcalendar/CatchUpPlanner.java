@@ -0,0 +1,193 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.CompiledScheme;
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans the remaining doses for a child who started late, or missed some doses.
+ *
+ * <p>Given the doses already administered and the current date, every remaining dose is scheduled as early as
+ * allowed: the next dose of each vaccine on the current date (or as soon as its minimum offset from the last
+ * administered dose permits), and every following one exactly its minimum offset after the previous one. The first
+ * dose of a vaccine is never scheduled earlier than its minimum offset from the date of birth. Doses that would fall
+ * after the scheme's <code>maxAge</code> are left out. Since the planner relies on the minimum offsets alone, every
+ * dose after the first must have one (an explicit 0 allows two doses on the same day).</p>
+ *
+ * <p>A planner is built once for a selection of vaccines, and can then be used for any number of children (and from
+ * any number of threads): the schemes are compiled into plain arrays, and the vaccines are indexed by
+ * <code>maxAge</code>, so that those the child is already too old for are skipped with a single binary search.</p>
+ */
+public class CatchUpPlanner {
+
+    /**
+     * The selected vaccines, in selection order.
+     */
+    private final VaccineType[] types;
+
+    /**
+     * Position of every vaccine in {@link #types}. Keyed by identity rather than indexed by ID, since IDs keep growing
+     * with every catalog ever loaded by this JVM.
+     */
+    private final Map<VaccineType, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Minimum offset of every dose (indexed from 0) of every vaccine.
+     */
+    private final int[][] minOffsets;
+
+    /**
+     * Positions of the vaccines, sorted by their <code>maxAge</code>.
+     */
+    private final int[] byMaxAge;
+
+    /**
+     * The <code>maxAge</code> of the vaccines, in the same (ascending) order as {@link #byMaxAge}.
+     */
+    private final int[] sortedMaxAges;
+
+    /**
+     * Constructs a planner for a selection of vaccines.
+     * @param   vaccines
+     *          the selected vaccines. The order decides the order of doses within a day.
+     * @throws  IllegalArgumentException
+     *          if a dose after the first has no minimum offset. Doses without one would all end up on the same day.
+     */
+    public CatchUpPlanner(List<VaccineType> vaccines) {
+        int n = vaccines.size();
+        this.types = vaccines.toArray(new VaccineType[0]);
+        this.minOffsets = new int[n][];
+
+        //same packed keys as in ScheduleTemplate: the maxAge in the upper half, the position in the lower one
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            positions.put(types[i], i);
+            Map<Integer, Integer> schemeOffsets = types[i].getVaccineScheme().getMinOffsets();
+            CompiledScheme scheme = types[i].getVaccineScheme().compile();
+            minOffsets[i] = new int[scheme.getNumberOfDoses()];
+            for (int dose = 1; dose <= minOffsets[i].length; dose++) {
+                if (dose > 1 && schemeOffsets.get(dose) == null) {
+                    throw new IllegalArgumentException("Vaccine " + types[i].getName()
+                            + " has no minimum offset for dose " + dose);
+                }
+                minOffsets[i][dose - 1] = scheme.getMinOffset(dose);
+            }
+            keys[i] = ((long) scheme.getMaxAge() << 32) | i;
+        }
+        Arrays.sort(keys);
+        this.byMaxAge = new int[n];
+        this.sortedMaxAges = new int[n];
+        for (int i = 0; i < n; i++) {
+            byMaxAge[i] = (int) keys[i];
+            sortedMaxAges[i] = (int) (keys[i] >> 32);
+        }
+    }
+
+    /**
+     * Plans the remaining doses for a single child.
+     * @param   dateOfBirth
+     *          the child's date of birth.
+     * @param   today
+     *          the current date. Nothing is scheduled earlier.
+     * @param   administered
+     *          the doses already administered, in any order. Doses of vaccines that aren't part of the selection are
+     *          ignored.
+     * @return
+     *          a new, mutable list of {@link ScheduleForDay}s, sorted from earliest to latest.
+     */
+    public List<ScheduleForDay> plan(TinyDate dateOfBirth, TinyDate today, Collection<Dose> administered) {
+        int birth = dateOfBirth.toEpochDay();
+        int now = today.toEpochDay();
+
+        int[] given = new int[types.length];
+        int[] lastGiven = new int[types.length];
+        //epoch days before 1970 are negative, so 0 isn't a neutral start for the maximum
+        Arrays.fill(lastGiven, Integer.MIN_VALUE);
+        for (Dose dose : administered) {
+            Integer position = positions.get(dose.getType());
+            if (position == null) {
+                continue;
+            }
+            given[position]++;
+            lastGiven[position] = Math.max(lastGiven[position], dose.getDate().toEpochDay());
+        }
+
+        long[] keys = new long[16];
+        int count = 0;
+        //vaccines the child is already too old for are never visited
+        for (int i = firstEligible(now - birth); i < byMaxAge.length; i++) {
+            int position = byMaxAge[i];
+            int[] offsets = minOffsets[position];
+            int dose = given[position];
+            if (dose >= offsets.length) {
+                continue;
+            }
+            long maxDay = (long) birth + sortedMaxAges[i];
+            int day = Math.max(now, (dose == 0 ? birth : lastGiven[position]) + offsets[dose]);
+            for (; dose < offsets.length && day <= maxDay; dose++) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                keys[count++] = ((long) day << 32) | ((long) position << 16) | dose;
+                if (dose + 1 < offsets.length) {
+                    day += offsets[dose + 1];
+                }
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        List<ScheduleForDay> scheduledDates = new ArrayList<>();
+        List<Dose> dosesAtDate = null;
+        TinyDate date = null;
+        for (int i = 0; i < count; i++) {
+            int day = (int) (keys[i] >> 32);
+            if (date == null || date.toEpochDay() != day) {
+                date = TinyDate.ofEpochDay(day);
+                dosesAtDate = new ArrayList<>();
+                scheduledDates.add(new ScheduleForDay(date, dosesAtDate));
+            }
+            VaccineType type = types[(int) (keys[i] >>> 16) & 0xFFFF];
+            int dose = (int) keys[i] & 0xFFFF;
+            dosesAtDate.add(new Dose(type, date, type.getAltName(dose)));
+        }
+        return scheduledDates;
+    }
+
+    /**
+     * Plans the remaining doses for a single child, see {@link #plan(TinyDate, TinyDate, Collection)}.
+     * @return
+     *          a new calendar holding the plan.
+     */
+    public VaccinationCalendar planCalendar(TinyDate dateOfBirth, TinyDate today, Collection<Dose> administered) {
+        return new VaccinationCalendar(Arrays.asList(types), plan(dateOfBirth, today, administered));
+    }
+
+    /**
+     * Finds the first vaccine (in {@link #byMaxAge}) which the child isn't too old for.
+     * @param   age
+     *          the child's age, in days.
+     * @return
+     *          the index of the first vaccine with <code>maxAge &gt;= age</code>.
+     */
+    private int firstEligible(int age) {
+        int low = 0;
+        int high = sortedMaxAges.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedMaxAges[middle] < age) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,58 @@
+package com.immunizationcalendar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Generates {@link VaccinationCalendar}s for whole birth cohorts at once, spreading the work across every core of
+ * a {@link ForkJoinPool}.
+ *
+ * <p>Each calendar is generated independently, from its own {@link CohortInput}, so the throughput scales with the
+ * number of cores. The result is always in the same order as the input, regardless of how the work was split.</p>
+ */
+public class CohortCalendarGenerator {
+
+    /**
+     * The pool running the generation.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a generator running on the common {@link ForkJoinPool}.
+     */
+    public CohortCalendarGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a generator running on a dedicated {@link ForkJoinPool}, for example to limit the number of cores
+     * used by a batch job.
+     * @param   pool
+     *          the pool to run on.
+     */
+    public CohortCalendarGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Generates a calendar for every input, in parallel.
+     * @param   inputs
+     *          the children of the cohort.
+     * @return
+     *          a new list of calendars, where the calendar at index <i>i</i> belongs to the <i>i</i>-th input (in the
+     *          iteration order of <code>inputs</code>).
+     */
+    public List<VaccinationCalendar> generate(Collection<CohortInput> inputs) {
+        //an ArrayList splits evenly, unlike most other collections
+        List<CohortInput> list = inputs instanceof ArrayList ? (List<CohortInput>) inputs : new ArrayList<>(inputs);
+
+        //a parallel stream started from within a pool runs on that pool
+        return pool.submit(() -> list.parallelStream()
+                        .map(VaccinationCalendar::new)
+                        .collect(Collectors.toList()))
+                .join();
+    }
+}
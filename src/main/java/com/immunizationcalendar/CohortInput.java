@@ -0,0 +1,20 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.List;
+
+/**
+ * Input data for a single child of a cohort: everything the {@link ScheduleGenerator} needs, without the UI-bound
+ * {@link Form}.
+ *
+ * @param   dateOfBirth
+ *          the child's date of birth.
+ * @param   dateOfFirstVaccination
+ *          the date from which dose offsets are measured.
+ * @param   vaccines
+ *          the selected vaccines. The list is shared, not copied, so many children can use the same selection.
+ */
+public record CohortInput(TinyDate dateOfBirth, TinyDate dateOfFirstVaccination, List<VaccineType> vaccines) {
+}
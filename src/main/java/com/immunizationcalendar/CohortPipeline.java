@@ -0,0 +1,398 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.DateParser;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams a whole birth registry through the {@link ScheduleGenerator}, in constant memory.
+ *
+ * <p>The pipeline has three stages, connected by bounded queues: a reader thread parses input rows, a number of
+ * worker threads generate the schedules, and the calling thread writes them out, in input order. At most
+ * <code>window</code> rows are in flight at any time; when the writer (or the workers) fall behind, the reader
+ * simply waits, so memory stays flat regardless of the size of the input. Every such wait is counted as a
+ * back-pressure stall.</p>
+ *
+ * <p>Each input line holds a single child: <code>dateOfBirth,dateOfFirstVaccination,ids</code>, where
+ * <code>ids</code> is a space-separated list of {@link VaccineType#getId()}s, for example
+ * <code>2024-01-15,2024-02-01,0 3 4</code>. Empty lines and lines starting with <code>#</code> are skipped,
+ * malformed lines are counted and skipped. An ID too large for an <code>int</code> is an error, which stops the run
+ * and reports the line number.</p>
+ *
+ * <p>Every scheduled dose becomes one output line: <code>lineNumber,date,name</code>, where
+ * <code>lineNumber</code> is the (1-based) number of the input line.</p>
+ */
+public class CohortPipeline {
+
+    /**
+     * Every supported vaccine, by its ID. A map rather than an array indexed by ID, since IDs keep growing with every
+     * catalog ever loaded by this JVM.
+     */
+    private final Map<Integer, VaccineType> vaccinesById;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int workers;
+
+    /**
+     * Maximum number of rows in flight, and the capacity of each queue.
+     */
+    private final int window;
+
+    /**
+     * Constructs a pipeline using one worker per core.
+     * @param   vaccines
+     *          every vaccine that can be referenced by the input.
+     */
+    public CohortPipeline(List<VaccineType> vaccines) {
+        this(vaccines, Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    /**
+     * Constructs a pipeline.
+     * @param   vaccines
+     *          every vaccine that can be referenced by the input.
+     * @param   workers
+     *          number of worker threads generating schedules.
+     * @param   window
+     *          maximum number of rows in flight, which bounds the memory used by the pipeline.
+     */
+    public CohortPipeline(List<VaccineType> vaccines, int workers, int window) {
+        if (workers < 1 || window < 1) {
+            throw new IllegalArgumentException("Both workers and window must be positive");
+        }
+        this.vaccinesById = new HashMap<>();
+        for (VaccineType vaccine : vaccines) {
+            vaccinesById.put(vaccine.getId(), vaccine);
+        }
+        this.workers = workers;
+        this.window = window;
+    }
+
+    /**
+     * A parsed input row. A row with a negative sequence signals the end of input.
+     */
+    private record Row(long sequence, long lineNumber, CohortInput input) {
+    }
+
+    /**
+     * A generated schedule. A result with a negative sequence signals that a worker has finished.
+     */
+    private record Result(long sequence, long lineNumber, List<ScheduleForDay> dates) {
+    }
+
+    private static final Row END_OF_INPUT = new Row(-1, -1, null);
+    private static final Result END_OF_WORK = new Result(-1, -1, null);
+
+    /**
+     * Runs the whole pipeline, returning once every row was written (or something failed).
+     * @param   input
+     *          path to the input file, in UTF-8.
+     * @param   output
+     *          sink for the generated doses. It's flushed, but not closed.
+     * @return
+     *          statistics of this run.
+     * @throws  IOException
+     *          if reading the input or writing the output fails.
+     */
+    public Stats run(Path input, Writer output) throws IOException {
+        Stats stats = new Stats();
+        BlockingQueue<Row> rows = new ArrayBlockingQueue<>(window);
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(window);
+        Semaphore inFlight = new Semaphore(window);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        ExecutorService threads = Executors.newFixedThreadPool(workers + 1, runnable -> {
+            Thread thread = new Thread(runnable, "cohort-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            threads.execute(() -> read(input, rows, inFlight, stats, failure));
+            for (int i = 0; i < workers; i++) {
+                threads.execute(() -> compute(rows, results, failure));
+            }
+            write(results, output, inFlight, stats, failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing", e);
+        } finally {
+            threads.shutdownNow();
+            stats.finish();
+        }
+
+        Exception cause = failure.get();
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause != null) {
+            throw new IOException(cause);
+        }
+        return stats;
+    }
+
+    /**
+     * Reader stage: parses the input, line by line.
+     */
+    private void read(Path input, BlockingQueue<Row> rows, Semaphore inFlight, Stats stats,
+                      AtomicReference<Exception> failure) {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            long sequence = 0;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                CohortInput parsed = parse(line, lineNumber);
+                if (parsed == null) {
+                    stats.rowsRejected++;
+                    continue;
+                }
+                if (!inFlight.tryAcquire()) {
+                    stats.stalls++;
+                    inFlight.acquire();
+                }
+                rows.put(new Row(sequence++, lineNumber, parsed));
+                stats.rowsRead++;
+            }
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //tell every worker to stop, whether the input ended or failed
+            for (int i = 0; i < workers; i++) {
+                try {
+                    rows.put(END_OF_INPUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Worker stage: generates the schedule for each row.
+     */
+    private void compute(BlockingQueue<Row> rows, BlockingQueue<Result> results, AtomicReference<Exception> failure) {
+        try {
+            try {
+                Row row;
+                while ((row = rows.take()) != END_OF_INPUT) {
+                    CohortInput input = row.input();
+                    List<ScheduleForDay> dates = ScheduleGenerator.generate(input.dateOfFirstVaccination(),
+                            input.dateOfBirth(), input.vaccines());
+                    results.put(new Result(row.sequence(), row.lineNumber(), dates));
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            results.put(END_OF_WORK);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer stage: writes the results in input order. Results that arrive early wait in a buffer, which can never
+     * hold more than {@link #window} entries.
+     */
+    private void write(BlockingQueue<Result> results, Writer output, Semaphore inFlight, Stats stats,
+                       AtomicReference<Exception> failure) throws IOException, InterruptedException {
+        Map<Long, Result> early = new HashMap<>();
+        StringBuilder line = new StringBuilder();
+        char[] buffer = new char[256];
+        long next = 0;
+        int finishedWorkers = 0;
+
+        while (finishedWorkers < workers) {
+            Result result = results.poll(100, TimeUnit.MILLISECONDS);
+            if (result == null) {
+                //a failed row will never arrive, so there's no point waiting for the rows after it
+                if (failure.get() != null) {
+                    break;
+                }
+                continue;
+            }
+            if (result == END_OF_WORK) {
+                finishedWorkers++;
+                continue;
+            }
+            early.put(result.sequence(), result);
+            while ((result = early.remove(next)) != null) {
+                for (ScheduleForDay date : result.dates()) {
+                    TinyDate day = TinyDate.ofEpochDay(date.getEpochDay());
+                    for (Dose dose : date.getDoses()) {
+                        line.setLength(0);
+                        line.append(result.lineNumber()).append(',');
+                        day.formatTo(line).append(',').append(dose.getAltName()).append('\n');
+                        if (buffer.length < line.length()) {
+                            buffer = new char[line.length() * 2];
+                        }
+                        line.getChars(0, line.length(), buffer, 0);
+                        output.write(buffer, 0, line.length());
+                        stats.dosesWritten++;
+                    }
+                }
+                stats.rowsWritten++;
+                next++;
+                inFlight.release();
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Parses a single input line, without creating any intermediate Strings.
+     * @return
+     *          the parsed row, or <code>null</code> if the line is malformed.
+     * @throws  IOException
+     *          if an ID doesn't fit in an <code>int</code>.
+     */
+    private CohortInput parse(String line, long lineNumber) throws IOException {
+        int dateOfBirth = DateParser.parse(line, 0);
+        int separator = DateParser.LENGTH;
+        if (!DateParser.isValid(dateOfBirth) || line.length() <= separator || line.charAt(separator) != ',') {
+            return null;
+        }
+        int firstVaccination = DateParser.parse(line, separator + 1);
+        separator += DateParser.LENGTH + 1;
+        if (!DateParser.isValid(firstVaccination)
+                || (line.length() > separator && line.charAt(separator) != ',')) {
+            return null;
+        }
+
+        List<VaccineType> vaccines = new ArrayList<>();
+        int id = -1;
+        for (int i = separator + 1; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : ' ';
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                if (id > (Integer.MAX_VALUE - digit) / 10) {
+                    throw new IOException("Vaccine ID out of range at line " + lineNumber);
+                }
+                id = (id < 0 ? 0 : id * 10) + digit;
+            } else if (c == ' ') {
+                if (id >= 0) {
+                    VaccineType vaccine = vaccinesById.get(id);
+                    if (vaccine == null) {
+                        return null;
+                    }
+                    vaccines.add(vaccine);
+                    id = -1;
+                }
+            } else {
+                return null;
+            }
+        }
+        return new CohortInput(TinyDate.ofNumber(dateOfBirth), TinyDate.ofNumber(firstVaccination), vaccines);
+    }
+
+    /**
+     * Statistics of a single {@link #run(Path, Writer)}.
+     */
+    public static class Stats {
+        private final long startNanos = System.nanoTime();
+        private long elapsedNanos;
+        private volatile long rowsRead;
+        private volatile long rowsRejected;
+        private volatile long stalls;
+        private long rowsWritten;
+        private long dosesWritten;
+
+        private void finish() {
+            elapsedNanos = System.nanoTime() - startNanos;
+        }
+
+        /**
+         * @return
+         *          the number of valid rows read from the input.
+         */
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        /**
+         * @return
+         *          the number of malformed rows skipped.
+         */
+        public long getRowsRejected() {
+            return rowsRejected;
+        }
+
+        /**
+         * @return
+         *          the number of rows whose schedules were written.
+         */
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        /**
+         * @return
+         *          the number of doses written.
+         */
+        public long getDosesWritten() {
+            return dosesWritten;
+        }
+
+        /**
+         * @return
+         *          how many times the reader had to wait, because the maximum number of rows was already in flight.
+         */
+        public long getStalls() {
+            return stalls;
+        }
+
+        /**
+         * @return
+         *          the wall-clock duration of the run, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return
+         *          the throughput of the run, in written rows per second.
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsWritten * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "rowsRead=" + rowsRead +
+                    ", rowsRejected=" + rowsRejected +
+                    ", rowsWritten=" + rowsWritten +
+                    ", dosesWritten=" + dosesWritten +
+                    ", stalls=" + stalls +
+                    ", rowsPerSecond=" + Math.round(getRowsPerSecond()) +
+                    '}';
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.immunizationcalendar.model.VaccineType;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -17,35 +18,49 @@ import java.util.List;
  * <p><s>Proper implementation will probably read the data from a JSON file.</s> <strong>Nope, that costs a ton in terms of
  * JS size!</strong>
  * </strong></p>
+ * <p>A DataProvider only holds immutable data, so a single instance can safely be shared by every thread and user
+ * session, paying for the catalog's memory once. Constructing it is cheap: the vaccines are served straight from the
+ * source's (possibly lazy) list, and everything that needs the whole catalog (the diseases, the
+ * {@link VaccineRegistry}, the {@link VaccineCoverPlanner} and the schemes) is built on first use, exactly once.</p>
  */
 public class DataProvider {
     /**
      * Currently used Source of vaccination data.
      */
-    //private IVaccineSource vaccinesSource;
+    private final IVaccineSourceNew vaccinesSource;
     /**
      * All available vaccines in the currently selected vaccination plan. Includes defaults and optionals.
      */
     private final List<VaccineType> vaccines;
     /**
-     * A list of all {@link BaseScheme}s that can be selected by the user. The schemes only *visually*
-     * represent the vaccination plans and don't hold any vaccination data themselves (the data is provided by
-     * {@link IVaccineSource}s instead).
+     * Everything derived from the whole catalog, <code>null</code> until first used (see {@link #catalog()}).
      */
-    private final List<BaseScheme> schemes;
-    private final List<Disease> diseases;
+    private volatile Catalog catalog;
 
     public DataProvider(IVaccineSourceNew vaccinesSource) {
-        // TODO: Should probably copy the list of vaccines from the source!
-
-        // this.vaccinesSource = vaccinesSource;
-        vaccines = vaccinesSource.getVaccines();
-        diseases = vaccinesSource.getDiseases();
-        schemes = buildSchemesList();
+        this.vaccinesSource = vaccinesSource;
+        //no copy: a lazy source only decodes the vaccines that are actually used
+        this.vaccines = Collections.unmodifiableList(vaccinesSource.getVaccines());
     }
 
+    /**
+     * @return
+     *          the derived data of the catalog, built by the first caller.
+     */
+    private Catalog catalog() {
+        Catalog result = catalog;
+        if (result == null) {
+            synchronized (this) {
+                result = catalog;
+                if (result == null) {
+                    result = new Catalog();
+                    catalog = result;
+                }
+            }
+        }
+        return result;
+    }
 
-    //TODO: Switch to an immutable list (unmodifiableList).
 
     /**
      * Helper function for creating a list of vaccination "plan" names and basic data. An example of a "plan" would
@@ -53,81 +68,78 @@ public class DataProvider {
      *
      * @return A list containing the supported {@link BaseScheme}s.
      */
-    private List<BaseScheme> buildSchemesList() {
+    private static List<BaseScheme> buildSchemesList(List<Disease> diseases, VaccineRegistry registry,
+                                                     VaccineCoverPlanner coverPlanner) {
         List<BaseScheme> schemesList = new ArrayList<>();
 
-        BaseScheme scheme1 = new BaseScheme("Darmowe dla plebsu");
+        List<Disease> mandatoryDiseases = new ArrayList<>();
         for (Disease disease : diseases) {
             if (disease.getRecommendation().equals(Recommendation.MANDATORY)){
-                scheme1.addDisease(disease);
-                scheme1.addVaccine(disease.getDefaultVaccine());
-            }
-        }
-        schemesList.add(scheme1);
-
-        BaseScheme scheme2 = new BaseScheme("obowiązkowe, ale z 3w1");
-        List<VaccineType> vaccinesForScheme2 = new ArrayList<>(scheme1.getVaccinesList());
-        switchToPolyvalent(vaccinesForScheme2, "szczepionka 3 w 1");
-        for (VaccineType vaccineType : vaccinesForScheme2) {
-            scheme2.addVaccine(vaccineType);
-            for (Disease disease : vaccineType.getDisease()) {
-                scheme2.addDisease(disease);
+                mandatoryDiseases.add(disease);
             }
         }
-        schemesList.add(scheme2);
+        schemesList.add(new BaseScheme("Darmowe dla plebsu", defaultVaccines(mandatoryDiseases, registry),
+                mandatoryDiseases));
+
+        schemesList.add(coveringScheme("obowiązkowe, ale z 3w1", mandatoryDiseases, registry, coverPlanner));
 
         schemesList.add(new BaseScheme("Jestę antyszczepę"));
 
-        BaseScheme scheme4 = new BaseScheme("LUBIE STRZYKAWKI :) ");
+        schemesList.add(new BaseScheme("LUBIE STRZYKAWKI :) ", defaultVaccines(diseases, registry), diseases));
+
+        schemesList.add(coveringScheme("wszystko na bogato", diseases, registry, coverPlanner));
+
+        return List.copyOf(schemesList);
+    }
+
+    /**
+     * @return
+     *          the default vaccines of the given diseases, in the same order. Diseases without a default vaccine are
+     *          left out.
+     */
+    private static List<VaccineType> defaultVaccines(List<Disease> diseases, VaccineRegistry registry) {
+        List<VaccineType> defaultVaccines = new ArrayList<>();
         for (Disease disease : diseases) {
-            scheme4.addVaccine(disease.getDefaultVaccine());
-            scheme4.addDisease(disease);
-        }
-        schemesList.add(scheme4);
-
-        BaseScheme scheme5 = new BaseScheme("wszystko na bogato");
-        List<VaccineType> vaccinesForScheme5 = new ArrayList<>(scheme4.getVaccinesList());
-        switchToPolyvalent(vaccinesForScheme5, "szczepionka 3 w 1");
-        for (VaccineType vaccineType : vaccinesForScheme5) {
-            scheme5.addVaccine(vaccineType);
-            for (Disease disease : vaccineType.getDisease()) {
-                scheme5.addDisease(disease);
+            VaccineType vaccine = registry.getDefaultVaccine(disease);
+            if (vaccine != null) {
+                defaultVaccines.add(vaccine);
             }
         }
-        schemesList.add(scheme5);
-
-        return schemesList;
+        return defaultVaccines;
     }
 
-    private void switchToPolyvalent(List<VaccineType> vaccinesForScheme, String polyvalentVaccName) {
-        VaccineType polyVaccine = null;
-        for (VaccineType vaccine : vaccines) {
-            if (vaccine.getName().equals(polyvalentVaccName)) {
-                polyVaccine = vaccine;
-                vaccinesForScheme.add(polyVaccine);
-            }
+    /**
+     * Creates a scheme with the fewest injections that cover the given diseases (see {@link VaccineCoverPlanner}).
+     * The scheme lists every disease its vaccines protect against, including the ones covered as a side effect.
+     * <p>Without a planner (see {@link Catalog#coverPlanner}), the scheme falls back to the default vaccines.</p>
+     */
+    private static BaseScheme coveringScheme(String name, List<Disease> diseasesToCover, VaccineRegistry registry,
+                                             VaccineCoverPlanner coverPlanner) {
+        if (coverPlanner == null) {
+            return new BaseScheme(name, defaultVaccines(diseasesToCover, registry), diseasesToCover);
         }
-        if (polyVaccine != null) {
-            for (Disease disease : polyVaccine.getDisease()) {
-                vaccinesForScheme.remove(disease.getDefaultVaccine());
-            }
+        List<VaccineType> schemeVaccines = coverPlanner.plan(diseasesToCover);
+        List<Disease> schemeDiseases = new ArrayList<>();
+        for (VaccineType vaccineType : schemeVaccines) {
+            schemeDiseases.addAll(vaccineType.getDisease());
         }
+        return new BaseScheme(name, schemeVaccines, schemeDiseases);
     }
 
     /**
-     * Gets the list of all supported {@link BaseScheme}s. <strong>The list is currently mutable.</strong> It's
+     * Gets the list of all supported {@link BaseScheme}s. The list is immutable. It's
      * used for displaying the "vaccination plan" radio select group.
      *
      * @return a list of all supported {@link BaseScheme}s.
      */
     public List<BaseScheme> getSchemes() {
-        return schemes;
+        return catalog().schemes;
     }
 
     /**
-     * Gets the list of all potential {@link VaccineType}s. <strong>The list is mutable.</strong> It's used for
-     * displaying the vaccine selection, the results (suggested vaccination dates), as well as tracking the selection
-     * toggle.
+     * Gets the list of all potential {@link VaccineType}s. The list is immutable. It's used for displaying
+     * the vaccine selection and the results (suggested vaccination dates); the selection itself is tracked per
+     * session, by a {@link VaccineSelector}.
      *
      * @return all supported vaccines.
      */
@@ -136,10 +148,16 @@ public class DataProvider {
     }
 
     public List<Disease> getDiseases() {
-        return diseases;
+        return catalog().diseases;
     }
 
-    // TODO: Copy the list from the source. Make the original list immutable.
+    /**
+     * @return
+     *          the index of all supported vaccines and diseases.
+     */
+    public VaccineRegistry getRegistry() {
+        return catalog().registry;
+    }
 
     /**
      * Updates the currently selected {@link BaseScheme}, which involves replacing the list of available
@@ -157,4 +175,36 @@ public class DataProvider {
 
     }
 
+    /**
+     * The part of the catalog that needs every vaccine and disease. Only published once fully built.
+     */
+    private final class Catalog {
+        private final List<Disease> diseases;
+        /**
+         * Index of {@link #vaccines} and {@link #diseases}, for lookups by ID and by name.
+         */
+        private final VaccineRegistry registry;
+        /**
+         * Picks the combination of (possibly polyvalent) vaccines with the fewest injections for a set of diseases.
+         * <code>null</code> for catalogs with more than {@value VaccineCoverPlanner#MAX_DISEASES} diseases, which use
+         * the default vaccines instead.
+         */
+        private final VaccineCoverPlanner coverPlanner;
+        /**
+         * A list of all {@link BaseScheme}s that can be selected by the user. The schemes only *visually*
+         * represent the vaccination plans and don't hold any vaccination data themselves (the data is provided by
+         * {@link IVaccineSourceNew}s instead).
+         */
+        private final List<BaseScheme> schemes;
+
+        private Catalog() {
+            diseases = List.copyOf(vaccinesSource.getDiseases());
+            registry = new VaccineRegistry(vaccines, diseases, vaccinesSource.getDefaultVaccines());
+            coverPlanner = diseases.size() <= VaccineCoverPlanner.MAX_DISEASES
+                    ? new VaccineCoverPlanner(vaccines, diseases, registry.getDefaultVaccines())
+                    : null;
+            schemes = buildSchemesList(diseases, registry, coverPlanner);
+        }
+    }
+
 }
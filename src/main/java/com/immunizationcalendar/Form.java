@@ -4,7 +4,10 @@ package com.immunizationcalendar;
 
 
 import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.DateParser;
 import com.immunizationcalendar.utils.DisplayState;
+import com.immunizationcalendar.utils.InputValidator;
+import com.immunizationcalendar.utils.TinyDate;
 
 import java.util.List;
 
@@ -14,7 +17,12 @@ import java.util.List;
  */
 public class Form {
 
-    private VaccineSelector vaccineSelector;
+    private final VaccineSelector vaccineSelector;
+
+    /**
+     * Coalesces the handlers that run when the selection changes or the form is submitted.
+     */
+    private final SelectionDispatcher selectionDispatcher = new SelectionDispatcher();
 
     /**
      * Child's birthdate.
@@ -69,6 +77,7 @@ public class Form {
      */
     public Form(DataProvider dataProvider) {
         this.vaccineSelector = new VaccineSelector(dataProvider);
+        selectionDispatcher.attach(vaccineSelector);
     }
 
     /**
@@ -177,7 +186,6 @@ public class Form {
     }
 
 
-//    TODO: perform more robust checks, for example with malformed Strings etc.
 //    TODO: possibly check if dates are within reasonable ranges
     // TODO: move some or all of this to the InputValidator
     /**
@@ -187,26 +195,60 @@ public class Form {
      *          <code>true</code> if it's OK to proceed, <code>false</code> otherwise.
      */
     private boolean validateDates() {
-        try {
-            //TODO: Use TinyDate instead, possibly allows us to get rid of Integer usage
-            //YYYY-MM-DD
-            int parsedBirth = Integer.parseInt(dateOfBirth.substring(0, 4)
-                    + dateOfBirth.substring(5, 7)
-                    + dateOfBirth.substring(8, 10));
-            if (parsedBirth < 19000101) {
-                dateOfBirthMissing = true;
-                return false;
-            }
-
-            int parsedFirstVaccination = Integer.parseInt(dateOfFirstVaccination.substring(0, 4)
-                    + dateOfFirstVaccination.substring(5, 7)
-                    + dateOfFirstVaccination.substring(8, 10));
-
-            dateOfFirstVaccinationTooEarly = parsedFirstVaccination < parsedBirth;
-            return !dateOfFirstVaccinationTooEarly;
-        } catch (Exception e) {
+        int parsedBirth = DateParser.parse(dateOfBirth);
+        if (!DateParser.isValid(parsedBirth)) {
+            return false;
+        }
+        if (parsedBirth < InputValidator.MIN_DATE) {
+            dateOfBirthMissing = true;
+            return false;
+        }
+
+        int parsedFirstVaccination = DateParser.parse(dateOfFirstVaccination);
+        if (!DateParser.isValid(parsedFirstVaccination)) {
             return false;
         }
+
+        dateOfFirstVaccinationTooEarly = parsedFirstVaccination < parsedBirth;
+        return !dateOfFirstVaccinationTooEarly;
+    }
+
+    /**
+     * Creates the {@link VaccinationCalendar} for the current (already validated) input. Repeated submits of the
+     * same data are answered from the shared {@link CalendarCache}, keyed by the selection fingerprint of the
+     * {@link VaccineSelector}.
+     * @return
+     *          a new calendar, owned by the caller.
+     */
+    public VaccinationCalendar createCalendar() {
+        return CalendarCache.getDefault().get(vaccineSelector.getSelectionFingerprint(),
+                new CohortInput(TinyDate.of(dateOfBirth), TinyDate.of(dateOfFirstVaccination), getVaccines()));
+    }
+
+    /**
+     * Runs the form-data handlers of the selected vaccines, each distinct handler once (see
+     * {@link SelectionDispatcher#applyFormDataHandlers(Form)}). Called after a successful {@link #submit()}.
+     */
+    public void applyFormDataHandlers() {
+        selectionDispatcher.applyFormDataHandlers(this);
+    }
+
+    /**
+     * @return
+     *          the selection of this session: the selected vaccines and checked schemes, and the functions that react
+     *          to changing them.
+     */
+    public VaccineSelector getVaccineSelector() {
+        return vaccineSelector;
+    }
+
+    /**
+     * @return
+     *          the dispatcher of selection handlers. Bulk changes of the selection (such as switching to another
+     *          {@link com.immunizationcalendar.model.BaseScheme}) should be wrapped in one of its transactions.
+     */
+    public SelectionDispatcher getSelectionDispatcher() {
+        return selectionDispatcher;
     }
 
     public List<VaccineType> getVaccines() {
@@ -0,0 +1,266 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.datasources.IVaccineSourceNew;
+import com.immunizationcalendar.datasources.JsonFileVaccineSource;
+import com.immunizationcalendar.datasources.SnapshotVaccineSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A vaccine catalog that follows changes of its file without restarting the application.
+ *
+ * <p>A background thread watches the catalog file with a {@link WatchService}. Once a burst of changes has settled,
+ * it loads the file and builds a complete new {@link DataProvider} (with all its indexes), and only then publishes it
+ * as the next {@link Version}, with a single atomic reference swap. Readers never block and never see a partially
+ * built catalog: {@link #current()} always returns a finished version. If loading fails, the previous version stays
+ * current, and the error is kept in {@link #getLastError()}.</p>
+ *
+ * <p>Versions are immutable from the catalog's point of view, so anything that started with one (e.g. a {@link Form}
+ * created from {@link Version#getDataProvider()}, and the calendars generated from it) simply keeps using it, while
+ * new work picks up the latest version.</p>
+ */
+public class ReloadingCatalog implements Closeable {
+
+    /**
+     * Loads a catalog file.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        IVaccineSourceNew load(Path path) throws IOException;
+    }
+
+    /**
+     * A single, fully built version of the catalog.
+     */
+    public static final class Version {
+
+        private final long number;
+        private final IVaccineSourceNew source;
+        private final DataProvider dataProvider;
+
+        private Version(long number, IVaccineSourceNew source) {
+            this.number = number;
+            this.source = source;
+            this.dataProvider = new DataProvider(source);
+            //a DataProvider builds its indexes on first use; a version is only published once they're done
+            dataProvider.getSchemes();
+        }
+
+        /**
+         * @return
+         *          the number of this version, starting from 1.
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        public IVaccineSourceNew getSource() {
+            return source;
+        }
+
+        public DataProvider getDataProvider() {
+            return dataProvider;
+        }
+
+        @Override
+        public String toString() {
+            return "Version{" +
+                    "number=" + number +
+                    ", source=" + source +
+                    '}';
+        }
+    }
+
+    /**
+     * How long the file has to stay unchanged before it's reloaded, so that a writer can finish.
+     */
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final Path path;
+    private final Loader loader;
+    private final AtomicReference<Version> current = new AtomicReference<>();
+    private final List<Consumer<Version>> reloadListeners = new CopyOnWriteArrayList<>();
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    private volatile Exception lastError;
+    private volatile boolean closed;
+
+    /**
+     * Loads a catalog and starts watching its file. JSON files (<code>*.json</code>) are read by a
+     * {@link JsonFileVaccineSource}, everything else is opened as a {@link SnapshotVaccineSource}, and verified (see
+     * {@link SnapshotVaccineSource#verify()}) before it's published.
+     * @param   path
+     *          the catalog file.
+     * @throws  IOException
+     *          if the initial version can't be loaded, or the file can't be watched.
+     */
+    public ReloadingCatalog(Path path) throws IOException {
+        this(path, file -> {
+            if (file.getFileName().toString().endsWith(".json")) {
+                return new JsonFileVaccineSource(file);
+            }
+            //the file is replaced by other processes, so it's checked in full
+            SnapshotVaccineSource snapshot = new SnapshotVaccineSource(file);
+            snapshot.verify();
+            return snapshot;
+        });
+    }
+
+    /**
+     * Loads a catalog and starts watching its file.
+     * @param   path
+     *          the catalog file.
+     * @param   loader
+     *          loads every version of the file. Runs on the background thread, except for the initial version.
+     * @throws  IOException
+     *          if the initial version can't be loaded, or the file can't be watched.
+     */
+    public ReloadingCatalog(Path path, Loader loader) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.loader = loader;
+        current.set(new Version(1, loader.load(this.path)));
+
+        this.watchService = this.path.getFileSystem().newWatchService();
+        try {
+            //writers usually replace the file with a move, which only shows up as a CREATE of the directory
+            this.path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.watcher = new Thread(this::watch, "catalog-reloader");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * @return
+     *          the latest fully built version. Never blocks.
+     */
+    public Version current() {
+        return current.get();
+    }
+
+    /**
+     * @return
+     *          the {@link DataProvider} of the latest version.
+     */
+    public DataProvider getDataProvider() {
+        return current.get().getDataProvider();
+    }
+
+    /**
+     * Registers a function that will be executed (on the background thread) after every published version. A
+     * listener that throws doesn't affect the other listeners, nor the reload itself; its exception goes to the
+     * thread's {@link Thread.UncaughtExceptionHandler}.
+     * @param   listener
+     *          a function for handling the new version.
+     */
+    public void addReloadListener(Consumer<Version> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * @return
+     *          the error of the last failed reload, or <code>null</code> if the last reload succeeded.
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Loads the file now, and publishes it as the next version. Reloads are serialized.
+     * @return
+     *          the new version.
+     * @throws  IOException
+     *          if loading fails. The current version doesn't change in that case, and neither does it if building
+     *          the new version throws a RuntimeException.
+     */
+    public synchronized Version reload() throws IOException {
+        IVaccineSourceNew source = loader.load(path);
+        Version next = new Version(current.get().getNumber() + 1, source);
+        current.set(next);
+        lastError = null;
+        for (Consumer<Version> listener : reloadListeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Stops watching the file. The current version stays available.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+        watcher.interrupt();
+    }
+
+    private void watch() {
+        Path fileName = path.getFileName();
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                boolean changed = pollChanges(key, fileName);
+                if (!changed) {
+                    continue;
+                }
+                //coalesce the whole burst of events of a single write
+                WatchKey next;
+                while ((next = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    pollChanges(next, fileName);
+                }
+                try {
+                    reload();
+                } catch (IOException | RuntimeException e) {
+                    lastError = e;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //closed
+        }
+    }
+
+    /**
+     * Consumes the events of a key.
+     * @return
+     *          <code>true</code> if any of them may concern the catalog file.
+     */
+    private static boolean pollChanges(WatchKey key, Path fileName) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return "ReloadingCatalog{" +
+                "path=" + path +
+                ", current=" + current.get() +
+                ", lastError=" + lastError +
+                '}';
+    }
+}
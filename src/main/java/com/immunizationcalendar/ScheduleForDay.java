@@ -48,20 +48,32 @@ public class ScheduleForDay {
      *          the list of vaccines to administer on that date.
      */
     public ScheduleForDay(String dateISO, List<Dose> vaccines) {
-        this.dateISO = dateISO;
+        this(TinyDate.of(dateISO), vaccines);
+    }
+
+    /**
+     * Constructs a <code>ScheduleForDay</code> given a date and a list of {@link Dose}s.
+     * @param   date
+     *          calendar date.
+     * @param   vaccines
+     *          the list of vaccines to administer on that date.
+     */
+    public ScheduleForDay(TinyDate date, List<Dose> vaccines) {
+        this.dateISO = date.toString();
         this.tempDate = dateISO;
         //TODO: Defensive copying? think if this should be immutable
         this.doses = vaccines;
 
-        dateInternal = new TinyDate(dateISO);
+        dateInternal = date;
     }
 
     /**
      * Sets the internal calendar dates to the temporary field (which is bound to user input).
      */
     public void confirmTempValue() {
+        //parsed first, so a malformed tempDate leaves both fields unchanged
+        dateInternal = TinyDate.of(tempDate);
         dateISO = tempDate;
-        dateInternal = new TinyDate(dateISO);
     }
 
     /**
@@ -83,6 +95,16 @@ public class ScheduleForDay {
         return dateInternal.asNumber();
     }
 
+    /**
+     * Returns the date as the number of days since 1970-01-01 (see {@link TinyDate#toEpochDay()}). This is the key
+     * used to index the date in a {@link VaccinationCalendar}.
+     * @return
+     *          the epoch day of this date.
+     */
+    public int getEpochDay() {
+        return dateInternal.toEpochDay();
+    }
+
     /**
      * Returns the <em>temporary</em> date (as a YYYY-MM-DD <code>String</code>), which is <strong>bidirectionally
      * bound</strong> with the value entered into the related HTML input field. It's <em>not</em> the actual date of
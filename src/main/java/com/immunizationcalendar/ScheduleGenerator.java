@@ -0,0 +1,42 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.List;
+
+/**
+ * This is a "static" utility class which turns a selection of {@link VaccineType}s into the list of
+ * {@link ScheduleForDay}s that make up a {@link VaccinationCalendar}.
+ *
+ * <p>Every dose is scheduled by walking its {@link VaccineScheme}: the first offset is measured from the start point
+ * (the date of the first vaccination), and every following offset from the previous dose. Each offset is the lower
+ * bound of the recommended range, if the scheme has one, but never less than the minimum offset (see
+ * {@link com.immunizationcalendar.model.CompiledScheme#getOffset(int)}). Doses that would fall
+ * after the scheme's <code>maxAge</code> (counted in days from the date of birth) are left out.</p>
+ *
+ * <p>The schemes are only walked once per selection: the result is compiled into a cached {@link ScheduleTemplate}
+ * (sorted and grouped by day), and every calendar is just that template shifted to its own start point.</p>
+ */
+public final class ScheduleGenerator {
+
+    private ScheduleGenerator() {
+    }
+
+    /**
+     * Schedules every dose of the given vaccines.
+     * @param   startDate
+     *          the date of the first vaccination, from which the offsets are measured.
+     * @param   dateOfBirth
+     *          the child's date of birth, used to apply each scheme's <code>maxAge</code>.
+     * @param   vaccines
+     *          the selected vaccines.
+     * @return
+     *          a new, mutable list of {@link ScheduleForDay}s, sorted from earliest to latest.
+     */
+    public static List<ScheduleForDay> generate(TinyDate startDate, TinyDate dateOfBirth, List<VaccineType> vaccines) {
+        return ScheduleTemplate.of(vaccines).instantiate(startDate, dateOfBirth);
+    }
+
+}
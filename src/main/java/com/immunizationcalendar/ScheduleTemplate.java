@@ -0,0 +1,216 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.CompiledScheme;
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A <strong>ScheduleTemplate</strong> is the "shape" of a calendar for a given selection of {@link VaccineType}s:
+ * every dose, with its offset (in days) from the start point, already sorted and grouped by day. Children with the
+ * same selection share the same template, only the start point differs, so turning a template into a concrete
+ * calendar is a single pass that shifts the offsets by the start point's epoch day.
+ *
+ * <p>Templates are immutable and cached (see {@link #of(List)}), which assumes that the {@link VaccineScheme}s of
+ * the selected vaccines don't change once the catalog is loaded.</p>
+ */
+public final class ScheduleTemplate {
+
+    /**
+     * Upper bound for the number of cached templates. Realistic workloads only ever use a handful of selections, but
+     * vaccine IDs are never reused, so every reloaded catalog (see {@link ReloadingCatalog}) brings new keys.
+     */
+    private static final int MAX_CACHED_TEMPLATES = 4096;
+
+    /**
+     * Compiled templates, keyed by the IDs of the selected vaccines (in selection order). Least recently used
+     * templates are evicted first, so templates of catalogs that are no longer used (and their vaccines) are
+     * eventually released. Guarded by its own lock.
+     */
+    private static final Map<List<Integer>, ScheduleTemplate> cache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Integer>, ScheduleTemplate> eldest) {
+                    return size() > MAX_CACHED_TEMPLATES;
+                }
+            };
+
+    /**
+     * Offset of every dose from the start point, in ascending order.
+     */
+    private final int[] offsets;
+
+    /**
+     * The vaccine of every dose (same index as in {@link #offsets}).
+     */
+    private final VaccineType[] types;
+
+    /**
+     * The display name of every dose (same index as in {@link #offsets}).
+     */
+    private final String[] names;
+
+    /**
+     * The <code>maxAge</code> of every dose's scheme (same index as in {@link #offsets}).
+     */
+    private final int[] maxAges;
+
+    /**
+     * Whether any of the doses has a finite <code>maxAge</code>, in which case the date of birth matters.
+     */
+    private final boolean ageLimited;
+
+    private ScheduleTemplate(int[] offsets, VaccineType[] types, String[] names, int[] maxAges) {
+        this.offsets = offsets;
+        this.types = types;
+        this.names = names;
+        this.maxAges = maxAges;
+
+        boolean limited = false;
+        for (int maxAge : maxAges) {
+            limited |= maxAge != Integer.MAX_VALUE;
+        }
+        this.ageLimited = limited;
+    }
+
+    /**
+     * Returns the (cached) template for the given selection.
+     * @param   vaccines
+     *          the selected vaccines. The order matters, as it decides the order of doses within a day.
+     * @return
+     *          the shared template.
+     */
+    public static ScheduleTemplate of(List<VaccineType> vaccines) {
+        List<Integer> key = new ArrayList<>(vaccines.size());
+        for (VaccineType vaccine : vaccines) {
+            key.add(vaccine.getId());
+        }
+        ScheduleTemplate template;
+        synchronized (cache) {
+            template = cache.get(key);
+        }
+        if (template == null) {
+            //compiled outside of the lock; racing threads may compile the same template twice
+            template = compile(vaccines);
+            synchronized (cache) {
+                ScheduleTemplate existing = cache.putIfAbsent(key, template);
+                if (existing != null) {
+                    template = existing;
+                }
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Compiles a selection into a new template, by walking every {@link VaccineScheme}: the first offset is measured
+     * from the start point, and every following offset from the previous dose.
+     * @param   vaccines
+     *          the selected vaccines.
+     * @return
+     *          a new template.
+     */
+    public static ScheduleTemplate compile(List<VaccineType> vaccines) {
+        CompiledScheme[] schemes = new CompiledScheme[vaccines.size()];
+        int capacity = 0;
+        for (int v = 0; v < schemes.length; v++) {
+            schemes[v] = vaccines.get(v).getVaccineScheme().compile();
+            capacity += schemes[v].getNumberOfDoses();
+        }
+
+        //each key holds the offset in its upper half and the index of the dose in its lower half, so sorting the
+        //keys orders the doses by date, keeping the original order of doses that share a date
+        long[] keys = new long[capacity];
+        int[] unsortedVaccines = new int[capacity];
+        int[] doseNumbers = new int[capacity];
+        int count = 0;
+
+        for (int v = 0; v < schemes.length; v++) {
+            CompiledScheme scheme = schemes[v];
+            int offset = 0;
+            for (int dose = 1; dose <= scheme.getNumberOfDoses(); dose++) {
+                offset += scheme.getOffset(dose);
+                keys[count] = ((long) offset << 32) | count;
+                unsortedVaccines[count] = v;
+                doseNumbers[count] = dose;
+                count++;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        int[] offsets = new int[count];
+        VaccineType[] types = new VaccineType[count];
+        String[] names = new String[count];
+        int[] maxAges = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            int v = unsortedVaccines[index];
+            offsets[i] = (int) (keys[i] >> 32);
+            types[i] = vaccines.get(v);
+            names[i] = types[i].getAltName(doseNumbers[index] - 1);
+            maxAges[i] = schemes[v].getMaxAge();
+        }
+        return new ScheduleTemplate(offsets, types, names, maxAges);
+    }
+
+    /**
+     * Turns this template into a concrete schedule. Doses that would fall after their scheme's <code>maxAge</code>
+     * (counted in days from the date of birth) are left out.
+     * @param   startDate
+     *          the date of the first vaccination, from which the offsets are measured.
+     * @param   dateOfBirth
+     *          the child's date of birth.
+     * @return
+     *          a new, mutable list of {@link ScheduleForDay}s, sorted from earliest to latest.
+     */
+    public List<ScheduleForDay> instantiate(TinyDate startDate, TinyDate dateOfBirth) {
+        int start = startDate.toEpochDay();
+        int age = start - dateOfBirth.toEpochDay();
+
+        List<ScheduleForDay> scheduledDates = new ArrayList<>();
+        int i = 0;
+        while (i < offsets.length) {
+            int offset = offsets[i];
+            TinyDate date = null;
+            List<Dose> dosesAtDate = null;
+            for (; i < offsets.length && offsets[i] == offset; i++) {
+                if (age + offset > maxAges[i]) {
+                    continue;
+                }
+                if (dosesAtDate == null) {
+                    date = TinyDate.ofEpochDay(start + offset);
+                    dosesAtDate = new ArrayList<>();
+                }
+                dosesAtDate.add(new Dose(types[i], date, names[i]));
+            }
+            if (dosesAtDate != null) {
+                scheduledDates.add(new ScheduleForDay(date, dosesAtDate));
+            }
+        }
+        return scheduledDates;
+    }
+
+    /**
+     * @return
+     *          the number of doses in this template (before applying any <code>maxAge</code>).
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * @return
+     *          <code>true</code> if any of the doses has a finite <code>maxAge</code>, in which case instances of this
+     *          template depend on the date of birth, and not only on the start point.
+     */
+    public boolean isAgeLimited() {
+        return ageLimited;
+    }
+}
@@ -0,0 +1,236 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.CompiledScheme;
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Incrementally checks the intervals between the {@link Dose}s of a {@link VaccinationCalendar}:
+ * <ul>
+ *     <li>every dose must respect the {@link VaccineScheme#getMinOffsets()} relative to the previous dose of the
+ *     same vaccine (the dose number being its position in the calendar). The first dose is measured from the date
+ *     of birth, which the calendar doesn't know, so it isn't checked;</li>
+ *     <li>{@link VaccTag#LIVE} vaccines must be given on the same day, or at least {@link #LIVE_VACCINE_SPACING} days
+ *     apart.</li>
+ * </ul>
+ *
+ * <p>The validator keeps a chain of doses, sorted by date, for every vaccine, and a sorted map of the days holding
+ * live vaccines. The calendar reports every added or removed dose, which only marks the affected chain (or day) as
+ * dirty; {@link #getViolations()} then re-checks nothing but the dirty chains (up to the last dose with a minimum
+ * offset) and the neighbours of the dirty days. The violations themselves are kept sorted by date.</p>
+ */
+final class ScheduleValidator {
+
+    /**
+     * Minimum number of days between two live vaccines that aren't given on the same day.
+     */
+    static final int LIVE_VACCINE_SPACING = 28;
+
+    /**
+     * The doses of every vaccine (keyed by its ID), sorted by date. Each key holds the epoch day in its upper half
+     * and an insertion counter in its lower half, so doses sharing a day keep their order.
+     */
+    private final Map<Integer, TreeMap<Long, Dose>> chains = new HashMap<>();
+
+    /**
+     * The key of every dose in its chain.
+     */
+    private final Map<Dose, Long> keys = new HashMap<>();
+
+    /**
+     * The live doses of every day that has any.
+     */
+    private final TreeMap<Integer, List<Dose>> liveDays = new TreeMap<>();
+
+    /**
+     * Every current violation, sorted by the date of the later dose. The keys are built like those of the
+     * {@link #chains}.
+     */
+    private final TreeMap<Long, ScheduleViolation> violations = new TreeMap<>();
+
+    /**
+     * Read-only view of the {@link #violations}, as returned by {@link #getViolations()}.
+     */
+    private final Collection<ScheduleViolation> view = Collections.unmodifiableCollection(violations.values());
+
+    /**
+     * Keys (in {@link #violations}) of the current {@link ScheduleViolation.Kind#MIN_OFFSET} violations, by vaccine
+     * ID.
+     */
+    private final Map<Integer, List<Long>> offsetViolations = new HashMap<>();
+
+    /**
+     * Keys (in {@link #violations}) of the current {@link ScheduleViolation.Kind#LIVE_SPACING} violations, by the
+     * later of the two days.
+     */
+    private final Map<Integer, Long> liveViolations = new HashMap<>();
+
+    /**
+     * Vaccines and live days changed since the last {@link #getViolations()}. Replaced rather than cleared, so that
+     * the initial (full) check doesn't leave behind huge tables.
+     */
+    private Set<Integer> dirtyChains = new HashSet<>();
+    private Set<Integer> dirtyLiveDays = new HashSet<>();
+
+    private int counter;
+
+    /**
+     * Constructs a validator for the current content of a calendar.
+     * @param   dosesByType
+     *          the doses of the calendar, grouped by vaccine ID, each with the {@link ScheduleForDay} holding it.
+     */
+    ScheduleValidator(Map<Integer, Map<Dose, ScheduleForDay>> dosesByType) {
+        for (Map<Dose, ScheduleForDay> doses : dosesByType.values()) {
+            for (Map.Entry<Dose, ScheduleForDay> entry : doses.entrySet()) {
+                add(entry.getKey(), entry.getValue().getEpochDay());
+            }
+        }
+    }
+
+    /**
+     * Records that a dose was scheduled on the given day.
+     */
+    void add(Dose dose, int epochDay) {
+        remove(dose);
+        int typeId = dose.getType().getId();
+        long key = nextKey(epochDay);
+        chains.computeIfAbsent(typeId, id -> new TreeMap<>()).put(key, dose);
+        keys.put(dose, key);
+        dirtyChains.add(typeId);
+
+        if (dose.getType().hasTag(VaccTag.LIVE)) {
+            liveDays.computeIfAbsent(epochDay, day -> new ArrayList<>()).add(dose);
+            dirtyLiveDays.add(epochDay);
+        }
+    }
+
+    /**
+     * Records that a dose was removed from the calendar.
+     */
+    void remove(Dose dose) {
+        Long key = keys.remove(dose);
+        if (key == null) {
+            return;
+        }
+        int typeId = dose.getType().getId();
+        TreeMap<Long, Dose> chain = chains.get(typeId);
+        chain.remove(key);
+        if (chain.isEmpty()) {
+            chains.remove(typeId);
+        }
+        dirtyChains.add(typeId);
+
+        int epochDay = (int) (key >> 32);
+        List<Dose> live = liveDays.get(epochDay);
+        if (live != null && live.remove(dose)) {
+            if (live.isEmpty()) {
+                liveDays.remove(epochDay);
+            }
+            dirtyLiveDays.add(epochDay);
+        }
+    }
+
+    /**
+     * Brings the violations up to date, re-checking only what changed since the last call.
+     * @return
+     *          a read-only view of every current violation, sorted by the date of the later dose.
+     */
+    Collection<ScheduleViolation> getViolations() {
+        for (int typeId : dirtyChains) {
+            checkChain(typeId);
+        }
+        dirtyChains = new HashSet<>();
+        for (int epochDay : dirtyLiveDays) {
+            checkLiveDay(epochDay);
+            Integer next = liveDays.higherKey(epochDay);
+            if (next != null) {
+                checkLiveDay(next);
+            }
+        }
+        dirtyLiveDays = new HashSet<>();
+
+        return view;
+    }
+
+    /**
+     * Walks the chain of a single vaccine, comparing every dose with the previous one. Doses past the last minimum
+     * offset of the scheme can't violate anything, so the walk stops there.
+     */
+    private void checkChain(int typeId) {
+        List<Long> oldKeys = offsetViolations.remove(typeId);
+        if (oldKeys != null) {
+            for (long key : oldKeys) {
+                violations.remove(key);
+            }
+        }
+        TreeMap<Long, Dose> chain = chains.get(typeId);
+        if (chain == null) {
+            return;
+        }
+
+        CompiledScheme scheme = chain.firstEntry().getValue().getType().getVaccineScheme().compile();
+        int lastNumber = scheme.getLastConstrainedDose();
+        List<Long> newKeys = null;
+        int number = 0;
+        int previousDay = 0;
+        Dose previousDose = null;
+        for (Map.Entry<Long, Dose> entry : chain.entrySet()) {
+            if (++number > lastNumber) {
+                break;
+            }
+            int epochDay = (int) (entry.getKey() >> 32);
+            Dose dose = entry.getValue();
+            if (previousDose != null) {
+                int minOffset = scheme.getMinOffset(number);
+                if (epochDay - previousDay < minOffset) {
+                    if (newKeys == null) {
+                        newKeys = new ArrayList<>();
+                    }
+                    long key = nextKey(epochDay);
+                    violations.put(key, new ScheduleViolation(ScheduleViolation.Kind.MIN_OFFSET,
+                            dose, epochDay, previousDose, previousDay, minOffset));
+                    newKeys.add(key);
+                }
+            }
+            previousDay = epochDay;
+            previousDose = dose;
+        }
+        if (newKeys != null) {
+            offsetViolations.put(typeId, newKeys);
+        }
+    }
+
+    /**
+     * Compares a day holding live vaccines with the previous such day.
+     */
+    private void checkLiveDay(int epochDay) {
+        Long oldKey = liveViolations.remove(epochDay);
+        if (oldKey != null) {
+            violations.remove(oldKey);
+        }
+        List<Dose> live = liveDays.get(epochDay);
+        Map.Entry<Integer, List<Dose>> previous = live == null ? null : liveDays.lowerEntry(epochDay);
+        if (previous == null || epochDay - previous.getKey() >= LIVE_VACCINE_SPACING) {
+            return;
+        }
+        long key = nextKey(epochDay);
+        violations.put(key, new ScheduleViolation(ScheduleViolation.Kind.LIVE_SPACING,
+                live.get(0), epochDay, previous.getValue().get(0), previous.getKey(), LIVE_VACCINE_SPACING));
+        liveViolations.put(epochDay, key);
+    }
+
+    private long nextKey(int epochDay) {
+        return ((long) epochDay << 32) | (counter++ & 0xFFFFFFFFL);
+    }
+}
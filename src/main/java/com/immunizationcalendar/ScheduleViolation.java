@@ -0,0 +1,106 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.utils.TinyDate;
+
+/**
+ * A <strong>ScheduleViolation</strong> describes two {@link Dose}s of a {@link VaccinationCalendar} that are
+ * scheduled too close to each other (see {@link VaccinationCalendar#getViolations()}).
+ */
+public class ScheduleViolation {
+
+    public enum Kind {
+        /**
+         * A dose is scheduled earlier after the previous dose of the same vaccine than allowed by
+         * {@link VaccineScheme#getMinOffsets()}.
+         */
+        MIN_OFFSET,
+        /**
+         * Two {@link VaccTag#LIVE} vaccines are scheduled on different days, less than 28 days apart.
+         */
+        LIVE_SPACING
+    }
+
+    private final Kind kind;
+    private final Dose dose;
+    private final TinyDate date;
+    private final Dose previousDose;
+    private final TinyDate previousDate;
+    private final int requiredDays;
+
+    ScheduleViolation(Kind kind, Dose dose, int epochDay, Dose previousDose, int previousEpochDay, int requiredDays) {
+        this.kind = kind;
+        this.dose = dose;
+        this.date = TinyDate.ofEpochDay(epochDay);
+        this.previousDose = previousDose;
+        this.previousDate = TinyDate.ofEpochDay(previousEpochDay);
+        this.requiredDays = requiredDays;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return
+     *          the later of the two doses, which should be moved to a later date.
+     */
+    public Dose getDose() {
+        return dose;
+    }
+
+    /**
+     * @return
+     *          the date on which {@link #getDose()} is scheduled.
+     */
+    public TinyDate getDate() {
+        return date;
+    }
+
+    /**
+     * @return
+     *          the earlier of the two doses.
+     */
+    public Dose getPreviousDose() {
+        return previousDose;
+    }
+
+    /**
+     * @return
+     *          the date on which {@link #getPreviousDose()} is scheduled.
+     */
+    public TinyDate getPreviousDate() {
+        return previousDate;
+    }
+
+    /**
+     * @return
+     *          the minimum number of days required between the two doses.
+     */
+    public int getRequiredDays() {
+        return requiredDays;
+    }
+
+    /**
+     * @return
+     *          the actual number of days between the two doses.
+     */
+    public int getActualDays() {
+        return previousDate.daysBetween(date);
+    }
+
+    @Override
+    public String toString() {
+        return "ScheduleViolation{" +
+                "kind=" + kind +
+                ", dose=" + dose.getAltName() +
+                ", date=" + date +
+                ", previousDose=" + previousDose.getAltName() +
+                ", previousDate=" + previousDate +
+                ", requiredDays=" + requiredDays +
+                ", actualDays=" + getActualDays() +
+                '}';
+    }
+}
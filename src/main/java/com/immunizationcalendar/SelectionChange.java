@@ -0,0 +1,83 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.VaccineType;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A <strong>SelectionChange</strong> describes a single, consolidated change of the vaccine selection: every
+ * {@link VaccineType} that ended up selected or deselected. Vaccines that were toggled and then toggled back before
+ * the change was published (see {@link SelectionDispatcher}) are not part of it.
+ */
+public class SelectionChange {
+
+    /**
+     * Newly selected vaccines, in the order they were first touched.
+     */
+    private final List<VaccineType> selected;
+
+    /**
+     * Newly deselected vaccines, in the order they were first touched.
+     */
+    private final List<VaccineType> deselected;
+
+    /**
+     * Constructs a SelectionChange.
+     * @param   selected
+     *          the newly selected vaccines. The list is not copied.
+     * @param   deselected
+     *          the newly deselected vaccines. The list is not copied.
+     */
+    SelectionChange(List<VaccineType> selected, List<VaccineType> deselected) {
+        this.selected = Collections.unmodifiableList(selected);
+        this.deselected = Collections.unmodifiableList(deselected);
+    }
+
+    /**
+     * @return
+     *          the number of vaccines whose selection changed.
+     */
+    public int size() {
+        return selected.size() + deselected.size();
+    }
+
+    public boolean isEmpty() {
+        return selected.isEmpty() && deselected.isEmpty();
+    }
+
+    /**
+     * Checks whether the selection of a given vaccine was changed.
+     * @param   vaccine
+     *          the vaccine in question.
+     * @return
+     *          <code>true</code> if it was selected or deselected.
+     */
+    public boolean affects(VaccineType vaccine) {
+        return selected.contains(vaccine) || deselected.contains(vaccine);
+    }
+
+    /**
+     * @return
+     *          a read-only list of the newly selected vaccines.
+     */
+    public List<VaccineType> getSelected() {
+        return selected;
+    }
+
+    /**
+     * @return
+     *          a read-only list of the newly deselected vaccines.
+     */
+    public List<VaccineType> getDeselected() {
+        return deselected;
+    }
+
+    @Override
+    public String toString() {
+        return "SelectionChange{" +
+                "selected=" + selected +
+                ", deselected=" + deselected +
+                '}';
+    }
+}
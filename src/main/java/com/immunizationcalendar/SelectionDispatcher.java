@@ -0,0 +1,222 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.BaseScheme;
+import com.immunizationcalendar.model.VaccineType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces the handlers that run when the vaccine selection of a session changes (see
+ * {@link VaccineSelector#addSelectionHandler(VaccineType, Consumer)}) or when the {@link Form} is submitted (see
+ * {@link VaccineSelector#addFormDataHandler(VaccineType, Consumer)}).
+ *
+ * <p>Once attached to a {@link VaccineSelector}, every {@link VaccineSelector#setSelected(VaccineType, boolean)} only
+ * records the vaccine's state from before the change. The recorded changes are published together, either at the end of an explicit
+ * {@link Transaction}, at the end of the current UI pulse (if the dispatcher was given an {@link Executor}, such as
+ * <code>Platform::runLater</code>), or immediately otherwise. When they are published, vaccines that ended up in their
+ * original state are dropped, every distinct selection handler of the remaining ones runs exactly once (even if it's
+ * registered on several vaccines), and then every listener; handlers and listeners alike receive the consolidated
+ * {@link SelectionChange}.</p>
+ *
+ * <p>Like the {@link VaccineSelector} it's attached to, a dispatcher belongs to a single session and is confined to
+ * the session's thread (e.g. the UI thread): selection changes, transactions and publishing must all happen there,
+ * and the pulse executor has to run its tasks on that thread too (as <code>Platform::runLater</code> does).</p>
+ */
+public class SelectionDispatcher {
+
+    /**
+     * Runs the end-of-pulse publishing; <code>null</code> if changes outside of transactions are published
+     * immediately.
+     */
+    private final Executor pulse;
+
+    /**
+     * The selection of the session, <code>null</code> until {@link #attach(VaccineSelector)}.
+     */
+    private VaccineSelector selector;
+
+    /**
+     * Functions that run after every (consolidated) change of the selection.
+     */
+    private final List<Consumer<SelectionChange>> listeners = new ArrayList<>();
+
+    /**
+     * Every vaccine changed since the last publishing, mapped to its selection status from before the first change.
+     */
+    private Map<VaccineType, Boolean> pending = new LinkedHashMap<>();
+
+    /**
+     * Number of currently open transactions (see {@link #beginTransaction()}).
+     */
+    private int openTransactions;
+
+    /**
+     * <code>true</code> if publishing is already queued on the {@link #pulse}.
+     */
+    private boolean pulseScheduled;
+
+    /**
+     * Constructs a dispatcher which publishes changes made outside of transactions immediately.
+     */
+    public SelectionDispatcher() {
+        this(null);
+    }
+
+    /**
+     * Constructs a dispatcher which publishes changes made outside of transactions at the end of the current UI pulse.
+     * @param   pulse
+     *          runs tasks after the current UI pulse, e.g. <code>Platform::runLater</code>. <code>null</code> means
+     *          publishing immediately.
+     */
+    public SelectionDispatcher(Executor pulse) {
+        this.pulse = pulse;
+    }
+
+    /**
+     * Routes the selection changes of a session through this dispatcher. A dispatcher serves a single selector at a
+     * time.
+     * @param   selector
+     *          the selection of the session.
+     */
+    public void attach(VaccineSelector selector) {
+        this.selector = selector;
+        selector.setSelectionDispatcher(this);
+    }
+
+    /**
+     * Registers a function that will be executed once for every published {@link SelectionChange}.
+     * @param   listener
+     *          a function for handling the change.
+     */
+    public void addListener(Consumer<SelectionChange> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Records a change of the selection. Called by {@link VaccineSelector#setSelected(VaccineType, boolean)} of the
+     * attached selector.
+     * @param   vaccine
+     *          the changed vaccine.
+     * @param   previouslySelected
+     *          its selection status from before the change.
+     */
+    public void selectionChanged(VaccineType vaccine, boolean previouslySelected) {
+        pending.putIfAbsent(vaccine, previouslySelected);
+        if (openTransactions > 0) {
+            return;
+        }
+        if (pulse == null) {
+            flush();
+        } else if (!pulseScheduled) {
+            pulseScheduled = true;
+            pulse.execute(this::flush);
+        }
+    }
+
+    /**
+     * Opens a transaction: changes are only published once every open transaction is closed.
+     * @return
+     *          the transaction, to be closed (preferably with try-with-resources) once the changes are done.
+     */
+    public Transaction beginTransaction() {
+        openTransactions++;
+        return new Transaction();
+    }
+
+    /**
+     * Runs the given changes (e.g. switching to another {@link BaseScheme}) as a single transaction.
+     * @param   changes
+     *          a function that changes the selection.
+     */
+    public void inTransaction(Runnable changes) {
+        Transaction transaction = beginTransaction();
+        try {
+            changes.run();
+        } finally {
+            transaction.close();
+        }
+    }
+
+    /**
+     * Publishes every recorded change now, unless a transaction is open.
+     */
+    public void flush() {
+        pulseScheduled = false;
+        if (openTransactions > 0 || pending.isEmpty()) {
+            return;
+        }
+        //handlers may change the selection again, which is then published separately
+        Map<VaccineType, Boolean> changed = pending;
+        pending = new LinkedHashMap<>();
+
+        List<VaccineType> selected = new ArrayList<>();
+        List<VaccineType> deselected = new ArrayList<>();
+        Set<Consumer<SelectionChange>> handlers = new LinkedHashSet<>();
+        for (Map.Entry<VaccineType, Boolean> entry : changed.entrySet()) {
+            VaccineType vaccine = entry.getKey();
+            //toggled back and forth = no change at all
+            boolean isSelected = selector.isSelected(vaccine);
+            if (isSelected == entry.getValue()) {
+                continue;
+            }
+            (isSelected ? selected : deselected).add(vaccine);
+            handlers.addAll(selector.getSelectionHandlers(vaccine));
+        }
+        if (selected.isEmpty() && deselected.isEmpty()) {
+            return;
+        }
+
+        SelectionChange change = new SelectionChange(selected, deselected);
+        handlers.forEach(handler -> handler.accept(change));
+        //a listener may register further listeners
+        new ArrayList<>(listeners).forEach(listener -> listener.accept(change));
+    }
+
+    /**
+     * Invokes the form-data handlers of the selected vaccines (see
+     * {@link VaccineSelector#addFormDataHandler(VaccineType, Consumer)}), running every distinct handler exactly once,
+     * even if it's registered on several vaccines.
+     * @param   form
+     *          the submitted {@link Form}.
+     */
+    public void applyFormDataHandlers(Form form) {
+        Set<Consumer<Form>> handlers = new LinkedHashSet<>();
+        selector.forEachSelectedVaccine(vaccine -> handlers.addAll(selector.getFormDataHandlers(vaccine)));
+        handlers.forEach(handler -> handler.accept(form));
+    }
+
+    private void endTransaction() {
+        openTransactions--;
+        flush();
+    }
+
+    /**
+     * A group of selection changes that is published as one {@link SelectionChange}. Transactions can be nested.
+     */
+    public class Transaction implements AutoCloseable {
+
+        private boolean closed;
+
+        private Transaction() {
+        }
+
+        /**
+         * Closes this transaction, publishing the changes if it was the last open one.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            endTransaction();
+        }
+    }
+}
@@ -5,9 +5,17 @@ import com.immunizationcalendar.model.VaccineType;
 import com.immunizationcalendar.utils.TinyDate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 
 /**
@@ -17,7 +25,8 @@ import java.util.Map;
 public class VaccinationCalendar {
 
     /**
-     * Reference to the input form, from which data should be taken.
+     * Reference to the input form, from which data should be taken. <code>null</code> for calendars generated
+     * without one (see {@link CohortInput}).
      */
     private final Form form;
 
@@ -27,9 +36,62 @@ public class VaccinationCalendar {
     private final List<VaccineType> vaccines;
 
     /**
-     * The main point of this class. A sorted list of {@link ScheduleForDay}s.
+     * The main point of this class. Every {@link ScheduleForDay}, keyed (and therefore sorted) by its epoch day (see
+     * {@link ScheduleForDay#getEpochDay()}). Finding, adding, merging and removing days is O(log n), and the calendar
+     * never has to be re-sorted.
      */
-    private final List<ScheduleForDay> scheduledDates = new ArrayList<>();
+    private final TreeMap<Integer, ScheduleForDay> scheduledDates = new TreeMap<>();
+
+    /**
+     * Read-only, sorted list of the {@link #scheduledDates}, as returned by {@link #get()}. Built on demand, and
+     * discarded (set to <code>null</code>) whenever the calendar changes.
+     */
+    private List<ScheduleForDay> sortedDates;
+
+    /**
+     * Secondary index: maps the ID of every {@link VaccineType} present in this calendar to its {@link Dose}s, and
+     * each Dose to the {@link ScheduleForDay} that currently holds it. Kept in sync by every method that adds or
+     * removes doses, which lets per-vaccine operations cost O(doses of that vaccine) instead of a full scan.
+     * <p>Doses added or removed directly through {@link ScheduleForDay#getDoses()} bypass this index.</p>
+     */
+    private final Map<Integer, Map<Dose, ScheduleForDay>> dosesByType = new HashMap<>();
+
+    /**
+     * Functions that run after every (consolidated) change of this calendar.
+     */
+    private final List<Consumer<CalendarChange>> changeListeners = new ArrayList<>();
+
+    /**
+     * Epoch days touched since the last {@link CalendarChange} was published. Replaced rather than cleared, since a
+     * large batch would otherwise leave behind a huge table that every following edit has to walk.
+     */
+    private Set<Integer> pendingChanges = new HashSet<>();
+
+    /**
+     * Number of currently open edits (see {@link #beginChange()}). Changes are only published once this drops back
+     * to zero, so nested and batched edits result in a single notification.
+     */
+    private int openChanges;
+
+    /**
+     * While a {@link Batch} is being committed: every day it touched, with the {@link ScheduleForDay} that held it
+     * before the batch and that day's doses at the time, so that a failed batch can be undone. <code>null</code>
+     * otherwise.
+     */
+    private Map<Integer, SavedDay> rollbackLog;
+
+    /**
+     * Immutable version of this calendar, as of the last completed edit. Built on the first call of
+     * {@link #snapshot()}, since most calendars (such as the ones of a cohort) never need one; from then on updated
+     * in O(log n) per changed day, so further calls cost nothing. <code>null</code> until then.
+     */
+    private CalendarSnapshot snapshot;
+
+    /**
+     * Checks the intervals between doses. Created on first use (see {@link #getViolations()}), and from then on kept
+     * in sync with {@link #dosesByType}.
+     */
+    private ScheduleValidator validator;
 
 
     /**
@@ -38,17 +100,52 @@ public class VaccinationCalendar {
      *          source of input data.
      */
     public VaccinationCalendar(Form form) {
+        this(form, form.getVaccines(), TinyDate.of(form.getDateOfBirth()),
+                TinyDate.of(form.getDateOfFirstVaccination()));
+    }
+
+
+    /**
+     * Constructs a calendar for a single child of a cohort, without a {@link Form}.
+     * @param   input
+     *          source of input data.
+     */
+    public VaccinationCalendar(CohortInput input) {
+        this(null, input.vaccines(), input.dateOfBirth(), input.dateOfFirstVaccination());
+    }
+
+
+    private VaccinationCalendar(Form form, List<VaccineType> vaccines, TinyDate dateOfBirth, TinyDate startDate) {
+        this(form, vaccines);
+
+        buildCalendarDates(dateOfBirth, startDate);
+    }
+
+
+    private VaccinationCalendar(Form form, List<VaccineType> vaccines) {
         this.form = form;
-        this.vaccines = form.getVaccines();
+        this.vaccines = vaccines;
+    }
+
+
+    /**
+     * Constructs a calendar from an already computed schedule (see {@link VisitOptimizer} and
+     * {@link CatchUpPlanner}).
+     * @param   vaccines
+     *          the selected vaccines.
+     * @param   dates
+     *          the schedule. The {@link ScheduleForDay}s become part of the calendar.
+     */
+    VaccinationCalendar(List<VaccineType> vaccines, List<ScheduleForDay> dates) {
+        this(null, vaccines);
 
-        buildCalendarDates();
-        sortByDate();
+        populate(dates);
     }
 
 
     /**
      * Constructs an empty calendar. Internal fields will be <code>null</code>s, except for
-     * {@link #scheduledDates}, which is initialized to an empty {@link ArrayList}.
+     * {@link #scheduledDates}, which is initialized to an empty map.
      */
     public VaccinationCalendar() {
         this.form = null;
@@ -62,7 +159,18 @@ public class VaccinationCalendar {
      *          {@link ScheduleForDay} object to be removed, usually supplied by Flavour from an HTML input field.
      */
     public void removeDate(ScheduleForDay date) {
-        scheduledDates.remove(date);
+        beginChange();
+        try {
+            if (scheduledDates.get(date.getEpochDay()) == date) {
+                touch(date.getEpochDay());
+                scheduledDates.remove(date.getEpochDay());
+                for (Dose dose : date.getDoses()) {
+                    unindex(dose);
+                }
+            }
+        } finally {
+            endChange();
+        }
     }
 
 
@@ -75,36 +183,30 @@ public class VaccinationCalendar {
      * @param   changedDate
      *          a {@link ScheduleForDay} object which has its internal <code>tempDate</code> field changed and is
      *          contained in this {@link VaccinationCalendar}.
+     * @throws  IllegalArgumentException
+     *          if the <code>tempDate</code> isn't a valid YYYY-MM-DD date. The calendar is left unchanged.
      */
     public void updateDate(ScheduleForDay changedDate) {
-        //empty input = remove from calendar completely
-        if (changedDate.getTempDate().isEmpty()) {
-            removeDate(changedDate);
-        } else {
-            //submit temp (input) value
-            changedDate.confirmTempValue();
-
-            boolean flaggedForRemoval = false;
-            for (ScheduleForDay d : scheduledDates) {
-                //don't do anything for the "changedDate" object itself
-                if (d == changedDate) {
-                    continue;
-                }
-                //if *another* ScheduleForDay has the same actual "date", merge their content
-                if (d.getDate().equals(changedDate.getDate())) {
-                    for (Dose dose : changedDate.getDoses()) {
-                        d.addDose(dose);
-                    }
-                    flaggedForRemoval = true;
-                }
-            }
+        beginChange();
+        try {
+            //empty input = remove from calendar completely
+            if (changedDate.getTempDate().isEmpty()) {
+                removeDate(changedDate);
+            } else {
+                //parse the input before changing anything, so that a malformed date doesn't lose the day
+                TinyDate.of(changedDate.getTempDate());
 
-            //if "changedDate"'s content was merged into another date, remove it
-            if (flaggedForRemoval) {
+                //the old key has to be removed before the date itself changes
                 removeDate(changedDate);
-            }
 
-            sortByDate();
+                //submit temp (input) value
+                changedDate.confirmTempValue();
+
+                //if *another* ScheduleForDay has the same actual "date", it absorbs the content of "changedDate"
+                addDate(changedDate);
+            }
+        } finally {
+            endChange();
         }
     }
 
@@ -123,29 +225,20 @@ public class VaccinationCalendar {
      *          <code>changedDate</code>
      */
     public void updateDose(ScheduleForDay changedDate, Dose changedDose) {
-        if (changedDose.isSetToNew()) {
-            // TODO: This may bug out if the Dose should have an alternate name
-            Dose updatedDose = new Dose(changedDose.getType(), changedDose.getTempDate());
-
-            //search the calendar to see if a Schedule already exists for this new date
-            boolean addedToExisting = false;
-            for (ScheduleForDay date : scheduledDates) {
-                if (date.getDate().equals(updatedDose.getTempDate())) {
-                    date.addDose(updatedDose);
-                    addedToExisting = true;
-                    break;
-                }
-            }
-            if (!addedToExisting) {
+        beginChange();
+        try {
+            if (changedDose.isSetToNew()) {
+                // TODO: This may bug out if the Dose should have an alternate name
+                Dose updatedDose = new Dose(changedDose.getType(), changedDose.getTempDate());
+
                 List<Dose> vaccinesAtDate = new ArrayList<>();
                 vaccinesAtDate.add(updatedDose);
-                scheduledDates.add(new ScheduleForDay(updatedDose.getTempDate(), vaccinesAtDate));
-
-                sortByDate();
+                addDate(new ScheduleForDay(updatedDose.getDate(), vaccinesAtDate));
             }
+            removeDose(changedDate, changedDose);
+        } finally {
+            endChange();
         }
-        removeDose(changedDate, changedDose);
-
     }
 
     /**
@@ -157,103 +250,628 @@ public class VaccinationCalendar {
      *          a Dose to be removed, usually supplied by Flavour from an HTML input field.
      */
     public void removeDose(ScheduleForDay changedDate, Dose dose) {
-        changedDate.removeDose(dose);
-        if (changedDate.getDoses().isEmpty()) {
-            removeDate(changedDate);
+        beginChange();
+        try {
+            touch(changedDate.getEpochDay());
+            changedDate.removeDose(dose);
+            unindex(dose);
+            if (changedDate.getDoses().isEmpty()) {
+                removeDate(changedDate);
+            }
+        } finally {
+            endChange();
         }
     }
 
 
     /**
      * Removes all {@link Dose}s of a given {@link VaccineType} from this calendar, removing empty
-     * {@link ScheduleForDay}s as needed.
+     * {@link ScheduleForDay}s as needed. Only the days holding that vaccine are visited.
      * @param   type
      *          a VaccineType to be purged from this calendar.
      */
     public void removeAllOfType(VaccineType type) {
-        for (ScheduleForDay date : scheduledDates) {
-            // TODO: This is probably not necessary in this version, replace isSame with an EQUALS (or even ==) ?
-            date.getDoses().removeIf(dose -> VaccineType.isSame(dose.getType(), type));
+        Map<Dose, ScheduleForDay> doses = dosesByType.remove(type.getId());
+        if (doses == null) {
+            return;
+        }
+        beginChange();
+        try {
+            for (Map.Entry<Dose, ScheduleForDay> entry : doses.entrySet()) {
+                ScheduleForDay date = entry.getValue();
+                touch(date.getEpochDay());
+                date.removeDose(entry.getKey());
+                if (validator != null) {
+                    validator.remove(entry.getKey());
+                }
+                if (date.getDoses().isEmpty()) {
+                    scheduledDates.remove(date.getEpochDay(), date);
+                }
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+
+    /**
+     * Lists every {@link Dose} of a given {@link VaccineType} in this calendar.
+     * @param   type
+     *          the VaccineType in question.
+     * @return
+     *          a new list of its doses, sorted from earliest to latest (by the date of their
+     *          {@link ScheduleForDay}).
+     */
+    public List<Dose> getDosesOfType(VaccineType type) {
+        Map<Dose, ScheduleForDay> doses = dosesByType.get(type.getId());
+        if (doses == null) {
+            return new ArrayList<>();
+        }
+        List<Map.Entry<Dose, ScheduleForDay>> entries = new ArrayList<>(doses.entrySet());
+        entries.sort((e1, e2) -> Integer.compare(e1.getValue().getEpochDay(), e2.getValue().getEpochDay()));
+
+        List<Dose> result = new ArrayList<>(entries.size());
+        for (Map.Entry<Dose, ScheduleForDay> entry : entries) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+
+    /**
+     * Counts the {@link Dose}s of a given {@link VaccineType} remaining in this calendar, in constant time.
+     * @param   type
+     *          the VaccineType in question.
+     * @return
+     *          the number of its doses.
+     */
+    public int countDosesOfType(VaccineType type) {
+        Map<Dose, ScheduleForDay> doses = dosesByType.get(type.getId());
+        return doses == null ? 0 : doses.size();
+    }
+
+
+    /**
+     * @return
+     *          the vaccines this calendar was built for.
+     */
+    List<VaccineType> getVaccines() {
+        return vaccines;
+    }
+
+
+    /**
+     * Creates a deep copy of this calendar: every {@link ScheduleForDay} and {@link Dose} is copied, so that
+     * editing the copy doesn't affect this calendar (and vice versa). Change listeners are not copied.
+     * @return
+     *          a new, independent calendar with the same content.
+     */
+    VaccinationCalendar copy() {
+        VaccinationCalendar copy = new VaccinationCalendar(form, vaccines);
+        for (ScheduleForDay date : scheduledDates.values()) {
+            List<Dose> doses = new ArrayList<>(date.getDoses().size());
+            for (Dose dose : date.getDoses()) {
+                doses.add(new Dose(dose.getType(), dose.getDate(), dose.getAltName()));
+            }
+            copy.addDate(new ScheduleForDay(TinyDate.ofEpochDay(date.getEpochDay()), doses));
+        }
+        copy.pendingChanges = new HashSet<>();
+        return copy;
+    }
+
+
+    /**
+     * Checks that every {@link Dose} respects the minimum offset from the previous dose of the same vaccine (see
+     * {@link com.immunizationcalendar.model.VaccineScheme#getMinOffsets()}), and that live vaccines are given on the
+     * same day or at least four weeks apart. Only the vaccines and days changed since the last call are re-checked.
+     * @return
+     *          a read-only view of the {@link ScheduleViolation}s, sorted by date; empty if the calendar is valid. The
+     *          view is brought up to date by every call of this method (and of the methods returning it).
+     */
+    public Collection<ScheduleViolation> getViolations() {
+        if (validator == null) {
+            validator = new ScheduleValidator(dosesByType);
+        }
+        return validator.getViolations();
+    }
+
+
+    /**
+     * Returns an immutable version of this calendar, for undo/redo (see {@link CalendarHistory}) or auto-saving. The
+     * first call builds the snapshot in O(n); after that, it's maintained as the calendar changes, so this method
+     * doesn't copy anything.
+     * @return
+     *          the state of this calendar after the last completed edit.
+     */
+    public CalendarSnapshot snapshot() {
+        if (snapshot == null) {
+            rebuildSnapshot();
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Replaces the content of this calendar with a previously taken {@link CalendarSnapshot}. Listeners are notified
+     * of every day that differs.
+     * @param   target
+     *          the snapshot to restore.
+     */
+    public void restore(CalendarSnapshot target) {
+        Set<Integer> days = new HashSet<>(scheduledDates.keySet());
+        target.forEachDay((epochDay, doses) -> days.add(epochDay));
+        int[] epochDays = new int[days.size()];
+        int i = 0;
+        for (int epochDay : days) {
+            epochDays[i++] = epochDay;
+        }
+        restore(target, epochDays);
+    }
+
+
+    /**
+     * Restores the given days from a {@link CalendarSnapshot}, leaving every other day untouched. This is only
+     * correct if no other day differs, e.g. when undoing a {@link CalendarChange}.
+     * @param   target
+     *          the snapshot to restore.
+     * @param   epochDays
+     *          the days to restore.
+     */
+    void restore(CalendarSnapshot target, int[] epochDays) {
+        beginChange();
+        try {
+            //every changed day is emptied before any is filled, since a dose may have moved between two of them
+            int[] changedEpochDays = new int[epochDays.length];
+            int changed = 0;
+            for (int epochDay : epochDays) {
+                ScheduleForDay date = scheduledDates.get(epochDay);
+                Dose[] doses = target.get(epochDay);
+                if (date == null ? doses == null : isSame(doses, date.getDoses())) {
+                    continue;
+                }
+                touch(epochDay);
+                if (date != null) {
+                    scheduledDates.remove(epochDay);
+                    for (Dose dose : date.getDoses()) {
+                        unindex(dose);
+                    }
+                }
+                changedEpochDays[changed++] = epochDay;
+            }
+            for (int i = 0; i < changed; i++) {
+                Dose[] doses = target.get(changedEpochDays[i]);
+                if (doses != null) {
+                    List<Dose> restored = new ArrayList<>(doses.length);
+                    for (Dose dose : doses) {
+                        //discard whatever the user typed in since
+                        dose.setTempDate(dose.getDate().toString());
+                        restored.add(dose);
+                    }
+                    addDate(new ScheduleForDay(TinyDate.ofEpochDay(changedEpochDays[i]), restored));
+                }
+            }
+            //unchanged days keep sharing the nodes of the target (see updateSnapshot)
+            snapshot = target;
+        } finally {
+            endChange();
+        }
+    }
+
+
+    /**
+     * Finds the {@link ScheduleForDay} for a given calendar date, in O(log n).
+     * @param   date
+     *          the calendar date.
+     * @return
+     *          the ScheduleForDay of that date, or <code>null</code> if nothing is scheduled on that day.
+     */
+    public ScheduleForDay getScheduleFor(TinyDate date) {
+        return scheduledDates.get(date.toEpochDay());
+    }
+
+
+    /**
+     * Adds a {@link ScheduleForDay} to this calendar. If another ScheduleForDay already exists for the same date,
+     * the doses of <code>date</code> are merged into it instead.
+     * @param   date
+     *          a ScheduleForDay which is not (or no longer) contained in this calendar.
+     */
+    private void addDate(ScheduleForDay date) {
+        touch(date.getEpochDay());
+        ScheduleForDay existing = scheduledDates.putIfAbsent(date.getEpochDay(), date);
+        ScheduleForDay holder = existing == null ? date : existing;
+        for (Dose dose : date.getDoses()) {
+            if (holder != date) {
+                holder.addDose(dose);
+            }
+            index(dose, holder);
+        }
+    }
+
+
+    /**
+     * Registers a function that will be executed after every change of this calendar. A single edit (such as
+     * {@link #updateDose(ScheduleForDay, Dose)}) or a whole {@link Batch} results in exactly one call.
+     * @param   listener
+     *          a function receiving the consolidated {@link CalendarChange}.
+     */
+    public void addChangeListener(Consumer<CalendarChange> listener) {
+        changeListeners.add(listener);
+    }
+
+
+    /**
+     * Starts a new {@link Batch} of edits. Nothing changes until {@link Batch#commit()} is called.
+     * @return
+     *          an empty Batch bound to this calendar.
+     */
+    public Batch beginBatch() {
+        return new Batch();
+    }
+
+
+    /**
+     * Opens an edit. Every public method that modifies this calendar is wrapped in a
+     * <code>beginChange()</code>/{@link #endChange()} pair.
+     */
+    private void beginChange() {
+        openChanges++;
+    }
+
+
+    /**
+     * Closes an edit. Closing the outermost one publishes every day touched in the meantime as a single
+     * {@link CalendarChange}.
+     */
+    private void endChange() {
+        openChanges--;
+        if (openChanges > 0 || pendingChanges.isEmpty()) {
+            return;
+        }
+        int[] changedEpochDays = new int[pendingChanges.size()];
+        int i = 0;
+        for (int epochDay : pendingChanges) {
+            changedEpochDays[i++] = epochDay;
+        }
+        Arrays.sort(changedEpochDays);
+        pendingChanges = new HashSet<>();
+        if (snapshot != null) {
+            updateSnapshot(changedEpochDays);
         }
-        scheduledDates.removeIf(date -> date.getDoses().isEmpty());
+
+        CalendarChange change = new CalendarChange(changedEpochDays);
+        changeListeners.forEach(listener -> listener.accept(change));
     }
 
 
     /**
-     * Sorts in ascending order, earliest to latest. <strong>Mutates</strong> the original list.
+     * Brings the {@link #snapshot} up to date for the given days. Days whose doses didn't actually change keep their
+     * old nodes.
      */
-    private void sortByDate() {
-        //intentionally NOT using a Comparator (saves a few kB in the resulting JS)
-        scheduledDates.sort((d1, d2)
-                -> d1.getDateAsNumber() - d2.getDateAsNumber());
+    private void updateSnapshot(int[] changedEpochDays) {
+        for (int epochDay : changedEpochDays) {
+            ScheduleForDay date = scheduledDates.get(epochDay);
+            if (date == null) {
+                snapshot = snapshot.without(epochDay);
+            } else if (!isSame(snapshot.get(epochDay), date.getDoses())) {
+                snapshot = snapshot.with(epochDay, date.getDoses().toArray(new Dose[0]));
+            }
+        }
     }
 
 
-    private void buildCalendarDates2(){
-        //key: unique date --> values: vaccines scheduled for that date
-        Map<String, List<Dose>> mapOfAllVaccinationsOnGivenDates = new HashMap<>();
-        TinyDate startDate = new TinyDate(form.getDateOfFirstVaccination());
+    /**
+     * Builds the {@link #snapshot} from scratch, in O(n).
+     */
+    private void rebuildSnapshot() {
+        int[] epochDays = new int[scheduledDates.size()];
+        Dose[][] doses = new Dose[epochDays.length][];
+        int i = 0;
+        for (ScheduleForDay date : scheduledDates.values()) {
+            epochDays[i] = date.getEpochDay();
+            doses[i++] = date.getDoses().toArray(new Dose[0]);
+        }
+        snapshot = CalendarSnapshot.of(epochDays, doses);
+    }
 
-        for (VaccineType vaccine : vaccines) {
 
+    /**
+     * Checks whether a day of a snapshot holds exactly the given doses (the same instances, in the same order).
+     */
+    private static boolean isSame(Dose[] snapshotDoses, List<Dose> doses) {
+        if (snapshotDoses == null || snapshotDoses.length != doses.size()) {
+            return false;
+        }
+        for (int i = 0; i < snapshotDoses.length; i++) {
+            if (snapshotDoses[i] != doses.get(i)) {
+                return false;
+            }
         }
+        return true;
     }
 
+
+    /**
+     * Marks a calendar day as changed. Has to be called <em>before</em> the day is modified, so that the
+     * {@link #rollbackLog} sees its previous state.
+     */
+    private void touch(int epochDay) {
+        pendingChanges.add(epochDay);
+        sortedDates = null;
+        if (rollbackLog != null && !rollbackLog.containsKey(epochDay)) {
+            ScheduleForDay date = scheduledDates.get(epochDay);
+            rollbackLog.put(epochDay, date == null ? null : new SavedDay(date, date.getDoses().toArray(new Dose[0])));
+        }
+    }
+
+
+    /**
+     * Records in {@link #dosesByType} (and the {@link #validator}, if any) that a {@link Dose} is held by the given {@link ScheduleForDay}.
+     */
+    private void index(Dose dose, ScheduleForDay date) {
+        dosesByType.computeIfAbsent(dose.getType().getId(), id -> new LinkedHashMap<>()).put(dose, date);
+        if (validator != null) {
+            validator.add(dose, date.getEpochDay());
+        }
+    }
+
+
+    /**
+     * Removes a {@link Dose} from {@link #dosesByType} (and the {@link #validator}, if any).
+     */
+    private void unindex(Dose dose) {
+        if (validator != null) {
+            validator.remove(dose);
+        }
+        Map<Dose, ScheduleForDay> doses = dosesByType.get(dose.getType().getId());
+        if (doses != null) {
+            doses.remove(dose);
+            if (doses.isEmpty()) {
+                dosesByType.remove(dose.getType().getId());
+            }
+        }
+    }
+
+
 //  TODO: Refactor so that the SOURCE provides the full list, and FORM only the selected ones
-//  TODO: Also, should probably be split into two methods for readability
-//  TODO: Refactor to use either TinyDate or its int value in the HashMap
-    /**
-     * Populates the {@link #scheduledDates} list with {@link ScheduleForDay}s, unsorted at this point.
-     */
-    private void buildCalendarDates() {
-
-//        //key: unique date --> values: vaccines scheduled for that date
-//        Map<String, List<Dose>> mapOfAllVaccinationsOnGivenDates = new HashMap<>();
-//
-//        TinyDate startDate = new TinyDate(form.getDateOfFirstVaccination());
-//
-//        //TODO: Some of this should probably be moved to VaccineType
-//        for (VaccineType type : vaccines) {
-//            if (!type.isSelected()) {
-//                //skip if this vaccine is not selected
-//                continue;
-//            }
-//            //each vaccine can have multiple doses, that are OFFSET by a certain number of days
-//            int[] dateOffsets = type.getDateOffsets();
-//            for (int i = 0; i < dateOffsets.length; i++) {
-//                int offsetInDays = dateOffsets[i];
-//                String variantName = type.getAltName(i);
-//                //when the dose should be administered
-//                String dateOfVaccination = startDate.addDays(offsetInDays).toString();
-//
-//                if (mapOfAllVaccinationsOnGivenDates.containsKey(dateOfVaccination)) {
-//                    //something is already scheduled for this date
-//                    //therefore, we add this "dose" to the list instead of duplicating the date
-//                    List<Dose> vaccinesAtDate = mapOfAllVaccinationsOnGivenDates.get(dateOfVaccination);
-//                    vaccinesAtDate.add(new Dose(type, new TinyDate(dateOfVaccination), variantName));
-//                } else {
-//                    //nothing is scheduled for this date, yet
-//                    //create a new list and add this "dose" as its first item
-//                    List<Dose> vaccinesAtDate = new ArrayList<>();
-//                    vaccinesAtDate.add(new Dose(type, new TinyDate(dateOfVaccination), variantName));
-//                    mapOfAllVaccinationsOnGivenDates.put(dateOfVaccination, vaccinesAtDate);
-//                }
-//            }
-//        }
-//
-////      TODO: This could be a separate method (maybe, could be overthinking)
-//        //translate each key-value pair of our HashMap to a ScheduleForDay instance
-//        //add them all to .calendarDates
-//        mapOfAllVaccinationsOnGivenDates.forEach(
-//                (date, vaccinesAtDate) -> scheduledDates.add(new ScheduleForDay(date, vaccinesAtDate)));
-    }
-
-    /**
-     * Getter for {@link #scheduledDates}.
+    /**
+     * Populates the {@link #scheduledDates} with {@link ScheduleForDay}s, using the {@link ScheduleGenerator}.
+     * @param   dateOfBirth
+     *          the child's date of birth.
+     * @param   startDate
+     *          the date of the first vaccination.
+     */
+    private void buildCalendarDates(TinyDate dateOfBirth, TinyDate startDate) {
+        populate(ScheduleGenerator.generate(startDate, dateOfBirth, vaccines));
+    }
+
+
+    /**
+     * Fills a new calendar with the given {@link ScheduleForDay}s, without notifying anyone.
+     */
+    private void populate(List<ScheduleForDay> dates) {
+        for (ScheduleForDay date : dates) {
+            addDate(date);
+        }
+        //nobody could have registered a listener yet
+        pendingChanges = new HashSet<>();
+    }
+
+    /**
+     * Getter for the {@link ScheduleForDay}s in this calendar. The list is only rebuilt (without sorting) if the
+     * calendar changed since the last call.
      * @return
-     *          the (sorted) list of {@link ScheduleForDay}s.
+     *          a read-only list of {@link ScheduleForDay}s, sorted from earliest to latest.
      */
     public List<ScheduleForDay> get() {
-        return scheduledDates;
+        if (sortedDates == null) {
+            sortedDates = Collections.unmodifiableList(new ArrayList<>(scheduledDates.values()));
+        }
+        return sortedDates;
+    }
+
+
+    /**
+     * A <strong>Batch</strong> collects any number of edits of its {@link VaccinationCalendar} and applies them all
+     * at once, in {@link #commit()}: new doses falling on the same day are merged into it in a single step, the
+     * sorted view is rebuilt at most once, and listeners receive a single {@link CalendarChange}.
+     * <p>The edits refer to the state of the calendar at the time of the commit. A Batch can only be committed
+     * once.</p>
+     */
+    public class Batch {
+
+        /**
+         * Doses to remove, each with the ScheduleForDay holding it.
+         */
+        private final Map<Dose, ScheduleForDay> removedDoses = new LinkedHashMap<>();
+
+        /**
+         * ScheduleForDays to remove entirely.
+         */
+        private final List<ScheduleForDay> removedDates = new ArrayList<>();
+
+        /**
+         * ScheduleForDays to move, with their new dates.
+         */
+        private final Map<ScheduleForDay, TinyDate> movedDates = new LinkedHashMap<>();
+
+        /**
+         * New doses, grouped by the epoch day they should be scheduled for.
+         */
+        private final Map<Integer, List<Dose>> addedDoses = new HashMap<>();
+
+        private boolean committed;
+
+        private Batch() {
+        }
+
+        /**
+         * Schedules an additional {@link Dose} on its own date ({@link Dose#getDate()}).
+         * @param   dose
+         *          a dose which is not yet in the calendar.
+         * @return
+         *          this Batch instance.
+         */
+        public Batch addDose(Dose dose) {
+            addedDoses.computeIfAbsent(dose.getDate().toEpochDay(), day -> new ArrayList<>()).add(dose);
+            return this;
+        }
+
+        /**
+         * Removes a {@link Dose} from its {@link ScheduleForDay}, like
+         * {@link VaccinationCalendar#removeDose(ScheduleForDay, Dose)}.
+         * @param   date
+         *          the ScheduleForDay holding the dose.
+         * @param   dose
+         *          the dose to remove.
+         * @return
+         *          this Batch instance.
+         */
+        public Batch removeDose(ScheduleForDay date, Dose dose) {
+            removedDoses.put(dose, date);
+            return this;
+        }
+
+        /**
+         * Reschedules a {@link Dose} to a new date. The dose keeps its {@link VaccineType} and display name.
+         * @param   date
+         *          the ScheduleForDay currently holding the dose.
+         * @param   dose
+         *          the dose to move.
+         * @param   newDate
+         *          the new date of the dose.
+         * @return
+         *          this Batch instance.
+         */
+        public Batch moveDose(ScheduleForDay date, Dose dose, TinyDate newDate) {
+            removeDose(date, dose);
+            return addDose(new Dose(dose.getType(), newDate, dose.getAltName()));
+        }
+
+        /**
+         * Removes a whole {@link ScheduleForDay}, like {@link VaccinationCalendar#removeDate(ScheduleForDay)}.
+         * @param   date
+         *          the ScheduleForDay to remove.
+         * @return
+         *          this Batch instance.
+         */
+        public Batch removeDate(ScheduleForDay date) {
+            removedDates.add(date);
+            return this;
+        }
+
+        /**
+         * Reschedules a whole {@link ScheduleForDay}, like {@link VaccinationCalendar#updateDate(ScheduleForDay)}.
+         * @param   date
+         *          the ScheduleForDay to move.
+         * @param   newDate
+         *          its new date.
+         * @return
+         *          this Batch instance.
+         */
+        public Batch moveDate(ScheduleForDay date, TinyDate newDate) {
+            movedDates.put(date, newDate);
+            return this;
+        }
+
+        /**
+         * Applies every edit of this Batch to the calendar: first all removals, then all additions, grouped by day.
+         * Listeners are notified once, after everything has been applied.
+         * <p>The Batch is applied as a whole or not at all: if an edit fails, every day touched by the Batch gets back
+         * its previous {@link ScheduleForDay} and doses, listeners aren't notified, and the exception is
+         * rethrown.</p>
+         * @throws  IllegalStateException
+         *          if this Batch was already committed.
+         */
+        public void commit() {
+            if (committed) {
+                throw new IllegalStateException("This batch was already committed");
+            }
+            committed = true;
+
+            beginChange();
+            rollbackLog = new HashMap<>();
+            try {
+                apply();
+                rollbackLog = null;
+            } catch (RuntimeException e) {
+                rollBack();
+                throw e;
+            } finally {
+                endChange();
+            }
+        }
+
+        private void apply() {
+            for (ScheduleForDay date : removedDates) {
+                VaccinationCalendar.this.removeDate(date);
+            }
+            for (Map.Entry<Dose, ScheduleForDay> entry : removedDoses.entrySet()) {
+                ScheduleForDay date = entry.getValue();
+                //touched first, so a failure below still rolls this day back
+                touch(date.getEpochDay());
+                date.removeDose(entry.getKey());
+                unindex(entry.getKey());
+                if (date.getDoses().isEmpty()) {
+                    VaccinationCalendar.this.removeDate(date);
+                }
+            }
+            for (Map.Entry<ScheduleForDay, TinyDate> entry : movedDates.entrySet()) {
+                ScheduleForDay date = entry.getKey();
+                VaccinationCalendar.this.removeDate(date);
+                if (date.getDoses().isEmpty()) {
+                    continue;
+                }
+                date.setTempDate(entry.getValue().toString());
+                date.confirmTempValue();
+                addDate(date);
+            }
+            for (Map.Entry<Integer, List<Dose>> entry : addedDoses.entrySet()) {
+                List<Dose> doses = entry.getValue();
+                addDate(new ScheduleForDay(doses.get(0).getDate(), new ArrayList<>(doses)));
+            }
+        }
+
+        /**
+         * Puts every day touched so far back into the state from the {@link #rollbackLog}, and drops the pending
+         * change, since the calendar ends up exactly as it was.
+         */
+        private void rollBack() {
+            Map<Integer, SavedDay> log = rollbackLog;
+            rollbackLog = null;
+            for (int epochDay : log.keySet()) {
+                ScheduleForDay date = scheduledDates.remove(epochDay);
+                if (date != null) {
+                    for (Dose dose : date.getDoses()) {
+                        unindex(dose);
+                    }
+                }
+            }
+            for (Map.Entry<Integer, SavedDay> entry : log.entrySet()) {
+                SavedDay saved = entry.getValue();
+                if (saved == null) {
+                    continue;
+                }
+                ScheduleForDay date = saved.date();
+                if (date.getEpochDay() != entry.getKey()) {
+                    //moved by the batch
+                    date.setTempDate(TinyDate.ofEpochDay(entry.getKey()).toString());
+                    date.confirmTempValue();
+                }
+                date.getDoses().clear();
+                date.getDoses().addAll(Arrays.asList(saved.doses()));
+                scheduledDates.put(entry.getKey(), date);
+                for (Dose dose : saved.doses()) {
+                    index(dose, date);
+                }
+            }
+            pendingChanges = new HashSet<>();
+        }
+    }
+
+    /**
+     * A day as it was before a {@link Batch}, see {@link #rollbackLog}.
+     */
+    private record SavedDay(ScheduleForDay date, Dose[] doses) {
     }
 }
@@ -0,0 +1,331 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.VaccineType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses the vaccines for a set of diseases so that the child gets as few injections as possible, substituting
+ * polyvalent (combination) vaccines for single ones wherever that helps.
+ *
+ * <p>Every disease of the catalog is a bit of a <code>long</code> mask, and every vaccine is represented by the mask of
+ * its {@link VaccineType#getDisease()}. For a given set of diseases, the planner looks for vaccines that</p>
+ * <ol>
+ *     <li>only work against the chosen diseases,</li>
+ *     <li>never overlap (no disease is vaccinated against twice),</li>
+ *     <li>cover as many of the chosen diseases as possible,</li>
+ *     <li>and, among those, need the fewest injections, preferring the diseases' default vaccines on ties.</li>
+ * </ol>
+ * <p>The search is a depth-first branch and bound that always branches on the lowest uncovered disease, trying the
+ * largest combinations first, so the first complete plan is the greedy one. Branches are cut when they can't beat
+ * the best plan found so far (every injection covers at most as many diseases as the largest combination), or when
+ * the same set of remaining diseases was already reached at a lower cost. Vaccines with the same mask are merged up
+ * front, so large catalogs with many brands of the same combination don't widen the search. If a search visits more
+ * than {@value #NODE_BUDGET} nodes, the best plan found so far is used. Plans are cached per disease set; the planner
+ * is safe to share between threads.</p>
+ */
+public class VaccineCoverPlanner {
+
+    /**
+     * Weights of the lexicographic cost: uncovered diseases first, then injections, then non-default vaccines.
+     */
+    private static final long UNCOVERED = 1L << 42;
+    private static final long INJECTION = 1L << 21;
+    private static final long NON_DEFAULT = 1L;
+
+    /**
+     * Maximum number of diseases in a catalog, one bit of the mask each. Larger catalogs have to do without a planner
+     * (see {@link DataProvider}).
+     */
+    public static final int MAX_DISEASES = Long.SIZE;
+
+    /**
+     * Maximum number of nodes visited by a single search.
+     */
+    static final int NODE_BUDGET = 200_000;
+
+    /**
+     * Bit of every disease, by position in the catalog.
+     */
+    private final Map<Disease, Integer> bits = new IdentityHashMap<>();
+
+    /**
+     * Distinct disease masks of the vaccines, and the preferred vaccine (and its cost) for each.
+     */
+    private final long[] masks;
+    private final VaccineType[] representatives;
+    private final long[] costs;
+
+    /**
+     * Indices (in {@link #masks}) of the masks containing every disease bit.
+     */
+    private final int[][] masksByBit;
+
+    /**
+     * Position of every vaccine in the catalog, used to sort the plans.
+     */
+    private final Map<VaccineType, Integer> positions = new IdentityHashMap<>();
+
+    /**
+     * Finished plans, by disease mask.
+     */
+    private final Map<Long, List<VaccineType>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a planner for a catalog.
+     * @param   vaccines
+     *          every vaccine of the catalog. Vaccines against diseases outside of <code>diseases</code> are ignored.
+     * @param   diseases
+     *          every disease of the catalog, at most {@value #MAX_DISEASES}.
+     * @param   defaultVaccines
+     *          the default vaccine of every disease that has one (see {@link VaccineRegistry#getDefaultVaccines()}).
+     * @throws  IllegalArgumentException
+     *          if there are more than {@value #MAX_DISEASES} diseases.
+     */
+    public VaccineCoverPlanner(List<VaccineType> vaccines, List<Disease> diseases,
+                               Map<Disease, VaccineType> defaultVaccines) {
+        if (diseases.size() > MAX_DISEASES) {
+            throw new IllegalArgumentException("At most " + MAX_DISEASES + " diseases are supported, got "
+                    + diseases.size());
+        }
+        for (Disease disease : diseases) {
+            bits.putIfAbsent(disease, bits.size());
+        }
+
+        Map<Long, Integer> byMask = new LinkedHashMap<>();
+        List<VaccineType> preferred = new ArrayList<>();
+        List<Long> preferredCosts = new ArrayList<>();
+        for (VaccineType vaccine : vaccines) {
+            positions.putIfAbsent(vaccine, positions.size());
+            long mask = 0;
+            boolean isDefault = false;
+            boolean known = true;
+            for (Disease disease : vaccine.getDisease()) {
+                Integer bit = bits.get(disease);
+                if (bit == null) {
+                    known = false;
+                    break;
+                }
+                mask |= 1L << bit;
+                isDefault |= defaultVaccines.get(disease) == vaccine;
+            }
+            if (!known || mask == 0) {
+                continue;
+            }
+            long cost = INJECTION + (isDefault ? 0 : NON_DEFAULT);
+            Integer index = byMask.get(mask);
+            if (index == null) {
+                byMask.put(mask, preferred.size());
+                preferred.add(vaccine);
+                preferredCosts.add(cost);
+            } else if (cost < preferredCosts.get(index)) {
+                preferred.set(index, vaccine);
+                preferredCosts.set(index, cost);
+            }
+        }
+
+        int n = byMask.size();
+        this.masks = new long[n];
+        this.representatives = preferred.toArray(new VaccineType[0]);
+        this.costs = new long[n];
+        int[] counts = new int[Long.SIZE];
+        int i = 0;
+        for (long mask : byMask.keySet()) {
+            masks[i] = mask;
+            costs[i] = preferredCosts.get(i);
+            for (long rest = mask; rest != 0; rest &= rest - 1) {
+                counts[Long.numberOfTrailingZeros(rest)]++;
+            }
+            i++;
+        }
+        this.masksByBit = new int[Long.SIZE][];
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            masksByBit[bit] = new int[counts[bit]];
+            counts[bit] = 0;
+        }
+        for (i = 0; i < n; i++) {
+            for (long rest = masks[i]; rest != 0; rest &= rest - 1) {
+                int bit = Long.numberOfTrailingZeros(rest);
+                masksByBit[bit][counts[bit]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Computes the disease mask used by {@link #plan(long)}.
+     * @param   diseases
+     *          any diseases. Diseases outside of the catalog are ignored.
+     * @return
+     *          the mask.
+     */
+    public long maskOf(Collection<Disease> diseases) {
+        long mask = 0;
+        for (Disease disease : diseases) {
+            Integer bit = bits.get(disease);
+            if (bit != null) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Plans the vaccines for the given diseases, see the class description.
+     * @param   diseases
+     *          the diseases to vaccinate against.
+     * @return
+     *          a read-only list of vaccines, in catalog order.
+     */
+    public List<VaccineType> plan(Collection<Disease> diseases) {
+        return plan(maskOf(diseases));
+    }
+
+    /**
+     * Plans the vaccines for the given disease mask (see {@link #maskOf(Collection)}).
+     * @param   diseaseMask
+     *          the diseases to vaccinate against.
+     * @return
+     *          a read-only list of vaccines, in catalog order.
+     */
+    public List<VaccineType> plan(long diseaseMask) {
+        List<VaccineType> cached = cache.get(diseaseMask);
+        if (cached != null) {
+            return cached;
+        }
+        Search search = new Search(diseaseMask);
+        search.run();
+
+        List<VaccineType> result = new ArrayList<>();
+        for (int i = 0; i < search.bestLength; i++) {
+            result.add(representatives[search.best[i]]);
+        }
+        result.sort((a, b) -> Integer.compare(positions.get(a), positions.get(b)));
+        List<VaccineType> plan = Collections.unmodifiableList(result);
+        cache.putIfAbsent(diseaseMask, plan);
+        return plan;
+    }
+
+    /**
+     * @return
+     *          the number of cached plans.
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * The branch and bound search for a single disease set.
+     */
+    private class Search {
+
+        /**
+         * Candidates (indices in {@link #masks}) for every disease bit, limited to the chosen diseases and sorted
+         * from the largest combination to the smallest.
+         */
+        private final int[][] candidates = new int[Long.SIZE][];
+
+        /**
+         * The chosen diseases that can be covered at all.
+         */
+        private final long target;
+
+        /**
+         * Every disease covered by a fitting vaccine, and the largest number of diseases covered by one of them.
+         */
+        private long coverable;
+        private int widest = 1;
+
+        /**
+         * Lowest cost at which every visited set of remaining diseases was reached.
+         */
+        private final Map<Long, Long> reached = new HashMap<>();
+
+        private final int[] chosen = new int[Long.SIZE];
+        private final int[] best = new int[Long.SIZE];
+        private int bestLength;
+        private long bestCost = Long.MAX_VALUE;
+        private int nodes;
+
+        private Search(long target) {
+            for (long rest = target; rest != 0; rest &= rest - 1) {
+                int bit = Long.numberOfTrailingZeros(rest);
+                List<Integer> fitting = new ArrayList<>();
+                for (int candidate : masksByBit[bit]) {
+                    if ((masks[candidate] & ~target) == 0) {
+                        fitting.add(candidate);
+                        coverable |= masks[candidate];
+                        widest = Math.max(widest, Long.bitCount(masks[candidate]));
+                    }
+                }
+                fitting.sort((a, b) -> Long.bitCount(masks[b]) != Long.bitCount(masks[a])
+                        ? Integer.compare(Long.bitCount(masks[b]), Long.bitCount(masks[a]))
+                        : Long.compare(costs[a], costs[b]));
+                candidates[bit] = fitting.stream().mapToInt(Integer::intValue).toArray();
+            }
+            //diseases without any fitting vaccine stay uncovered, whatever the plan
+            this.target = target & coverable;
+        }
+
+        private void run() {
+            search(target, 0, 0);
+        }
+
+        /**
+         * @param   remaining
+         *          the diseases not covered (or skipped) yet.
+         * @param   cost
+         *          the cost of the vaccines chosen so far.
+         * @param   length
+         *          the number of vaccines chosen so far (in {@link #chosen}).
+         */
+        private void search(long remaining, long cost, int length) {
+            if (remaining == 0) {
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestLength = length;
+                    System.arraycopy(chosen, 0, best, 0, length);
+                }
+                return;
+            }
+            int left = Long.bitCount(remaining);
+            if (cost + (left + widest - 1) / widest * INJECTION >= bestCost || ++nodes > NODE_BUDGET) {
+                return;
+            }
+            Long previous = reached.get(remaining);
+            if (previous != null && previous <= cost) {
+                return;
+            }
+            reached.put(remaining, cost);
+
+            int bit = Long.numberOfTrailingZeros(remaining);
+            for (int candidate : candidates[bit]) {
+                long mask = masks[candidate];
+                //none that are already covered
+                if ((mask & ~remaining) == 0) {
+                    chosen[length] = candidate;
+                    search(remaining & ~mask, cost + costs[candidate], length + 1);
+                }
+            }
+            //leaving the disease uncovered is always possible, but never cheap
+            search(remaining & ~(1L << bit), cost + UNCOVERED, length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VaccineCoverPlanner{" +
+                "diseases=" + bits.size() +
+                ", distinctVaccines=" + masks.length +
+                ", cachedPlans=" + cache.size() +
+                '}';
+    }
+}
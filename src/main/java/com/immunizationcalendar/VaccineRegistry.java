@@ -0,0 +1,191 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.VaccineType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indexes a catalog of {@link VaccineType}s and {@link Disease}s, so that looking them up never requires a scan.
+ *
+ * <p>Vaccine IDs are dense (see {@link VaccineType.Builder#create(String)}), so vaccines are found by ID with a single
+ * array access. Names and alt (per-dose) names of vaccines, as well as disease names, are hashed. Every disease is
+ * mapped to the vaccines that work against it, and to its default vaccine. The registry is immutable once built, and safe to share between
+ * threads.</p>
+ */
+public final class VaccineRegistry {
+
+    /**
+     * Every vaccine, at index <code>id - minId</code>; <code>null</code> for IDs that aren't part of the catalog.
+     */
+    private final VaccineType[] byId;
+
+    /**
+     * The smallest ID in the catalog. IDs are global, so a catalog doesn't necessarily start from 0.
+     */
+    private final int minId;
+
+    /**
+     * Position of every vaccine in the catalog, at the same index as in {@link #byId}; <code>-1</code> for IDs that
+     * aren't part of the catalog.
+     */
+    private final int[] positions;
+
+    /**
+     * Vaccines by their name and by each of their alt names. Names take precedence over alt names, and the first
+     * vaccine wins if several share the same name.
+     */
+    private final Map<String, VaccineType> byName;
+
+    private final Map<String, Disease> diseasesByName;
+
+    /**
+     * Every disease, mapped to a read-only list of the vaccines that work against it (in catalog order).
+     */
+    private final Map<Disease, List<VaccineType>> vaccinesByDisease;
+
+    /**
+     * The default vaccine of every disease that has one.
+     */
+    private final Map<Disease, VaccineType> defaultVaccines;
+
+    /**
+     * Builds the registry, in O(n) time.
+     * @param   vaccines
+     *          every vaccine of the catalog.
+     * @param   diseases
+     *          every disease of the catalog.
+     * @param   defaultVaccines
+     *          the default vaccine of every disease that has one (see
+     *          {@link com.immunizationcalendar.datasources.IVaccineSourceNew#getDefaultVaccines()}).
+     */
+    public VaccineRegistry(List<VaccineType> vaccines, List<Disease> diseases,
+                           Map<Disease, VaccineType> defaultVaccines) {
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (VaccineType vaccine : vaccines) {
+            min = Math.min(min, vaccine.getId());
+            max = Math.max(max, vaccine.getId());
+        }
+        this.minId = vaccines.isEmpty() ? 0 : min;
+        this.byId = new VaccineType[vaccines.isEmpty() ? 0 : max - min + 1];
+        this.positions = new int[byId.length];
+        Arrays.fill(positions, -1);
+
+        this.byName = new HashMap<>(vaccines.size() * 4);
+        Map<Disease, List<VaccineType>> adjacency = new HashMap<>(diseases.size() * 2);
+        for (int i = 0; i < vaccines.size(); i++) {
+            VaccineType vaccine = vaccines.get(i);
+            byId[vaccine.getId() - minId] = vaccine;
+            positions[vaccine.getId() - minId] = i;
+            byName.putIfAbsent(vaccine.getName(), vaccine);
+            for (Disease disease : vaccine.getDisease()) {
+                adjacency.computeIfAbsent(disease, d -> new ArrayList<>()).add(vaccine);
+            }
+        }
+        //alt names second, so they never shadow a proper name
+        for (VaccineType vaccine : vaccines) {
+            for (String altName : vaccine.getAltNames()) {
+                if (altName != null) {
+                    byName.putIfAbsent(altName, vaccine);
+                }
+            }
+        }
+
+        this.diseasesByName = new HashMap<>(diseases.size() * 2);
+        for (Disease disease : diseases) {
+            diseasesByName.putIfAbsent(disease.getName(), disease);
+            adjacency.putIfAbsent(disease, new ArrayList<>());
+        }
+        adjacency.replaceAll((disease, list) -> Collections.unmodifiableList(list));
+        this.vaccinesByDisease = adjacency;
+        this.defaultVaccines = Map.copyOf(defaultVaccines);
+    }
+
+    /**
+     * Finds the position of a vaccine in the catalog, in O(1). The positions are dense, so they can index
+     * per-session state (see {@link VaccineSelector}).
+     * @param   vaccine
+     *          any vaccine.
+     * @return
+     *          the index of the vaccine in the catalog's list, or <code>-1</code> if it isn't part of the catalog.
+     */
+    public int getPosition(VaccineType vaccine) {
+        int index = vaccine.getId() - minId;
+        return index >= 0 && index < byId.length && byId[index] == vaccine ? positions[index] : -1;
+    }
+
+    /**
+     * @param   id
+     *          the ID of a vaccine (see {@link VaccineType#getId()}).
+     * @return
+     *          the vaccine, or <code>null</code> if it isn't part of the catalog.
+     */
+    public VaccineType getById(int id) {
+        int index = id - minId;
+        return index >= 0 && index < byId.length ? byId[index] : null;
+    }
+
+    /**
+     * @param   name
+     *          the name, or one of the alt names, of a vaccine.
+     * @return
+     *          the vaccine, or <code>null</code> if there's none with that name.
+     */
+    public VaccineType getByName(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @param   name
+     *          the name of a disease.
+     * @return
+     *          the disease, or <code>null</code> if there's none with that name.
+     */
+    public Disease getDiseaseByName(String name) {
+        return diseasesByName.get(name);
+    }
+
+    /**
+     * @param   disease
+     *          a disease of the catalog.
+     * @return
+     *          a read-only list of the vaccines that work against the disease, in catalog order (empty if there are
+     *          none, or if the disease isn't part of the catalog).
+     */
+    public List<VaccineType> getVaccinesAgainst(Disease disease) {
+        return vaccinesByDisease.getOrDefault(disease, List.of());
+    }
+
+    /**
+     * @param   disease
+     *          a disease of the catalog.
+     * @return
+     *          the vaccine used against the disease by default, or <code>null</code> if it has none.
+     */
+    public VaccineType getDefaultVaccine(Disease disease) {
+        return defaultVaccines.get(disease);
+    }
+
+    /**
+     * @return
+     *          a read-only map from every disease that has a default vaccine to that vaccine.
+     */
+    public Map<Disease, VaccineType> getDefaultVaccines() {
+        return defaultVaccines;
+    }
+
+    @Override
+    public String toString() {
+        return "VaccineRegistry{" +
+                "vaccines=" + byId.length +
+                ", names=" + byName.size() +
+                ", diseases=" + vaccinesByDisease.size() +
+                '}';
+    }
+}
@@ -4,10 +4,27 @@ import com.immunizationcalendar.model.BaseScheme;
 import com.immunizationcalendar.model.VaccineType;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Manages the user's choice of vaccines
+ * Manages the user's choice of vaccines, for a single session.
+ *
+ * <p>The catalog (the {@link DataProvider} with its vaccines and schemes) is immutable and shared by every session;
+ * everything the user changes lives here instead: which vaccines are selected, which schemes are checked, and the
+ * functions registered to react to it. A selector only costs a few bit sets on top of the shared catalog. It isn't
+ * thread-safe, and is meant to be confined to its session.</p>
+ *
+ * <p>The selection is kept in bit sets, indexed by the position of each {@link VaccineType} (and {@link BaseScheme})
+ * in the {@link DataProvider}'s lists. Membership tests are O(1), iterating the selection only visits selected
+ * entries, and the lists returned by {@link #getSelectedVaccines()} and {@link #getSelectedSchemes()} are only rebuilt
+ * after the selection changed.</p>
  */
 public class VaccineSelector {
     /**
@@ -23,34 +40,299 @@ public class VaccineSelector {
     private final List<BaseScheme> schemes;
 
     /**
-     * Constructs the initial Form, pulling vaccine data from the provided {@link DataProvider}.
-     *
-     * @param dataProvider Source of supported vaccine data.
+     * Maps vaccines to their position in {@link #vaccines}. Shared with every other session of the catalog.
+     */
+    private final VaccineRegistry registry;
+
+    /**
+     * Position of every scheme in {@link #schemes}.
+     */
+    private final Map<BaseScheme, Integer> schemePositions = new IdentityHashMap<>();
+
+    /**
+     * Positions (in {@link #vaccines}) of the selected vaccines.
+     */
+    private final BitSet selectedVaccines = new BitSet();
+
+    /**
+     * Positions (in {@link #schemes}) of the checked schemes.
+     */
+    private final BitSet checkedSchemes = new BitSet();
+
+    /**
+     * XOR of the {@link #fingerprintOf(VaccineType)} of every selected vaccine.
      */
+    private long fingerprint;
 
+    /**
+     * Read-only lists of the selected vaccines and schemes, built on demand and discarded (set to <code>null</code>)
+     * whenever the selection changes.
+     */
+    private List<VaccineType> selectedVaccineList;
+    private List<BaseScheme> selectedSchemeList;
+
+    /**
+     * Functions that run whenever a vaccine is selected/deselected, by position of the vaccine. Only vaccines with
+     * handlers have an entry.
+     */
+    private final Map<Integer, List<Consumer<SelectionChange>>> selectionHandlers = new HashMap<>();
+
+    // TODO: Note, that the current setup won't work with "live" updating of input. If we need that,
+    //  formDataHandlers need to run every time the form gets modified in some way.
+    /**
+     * Functions that run once when the form is submitted, by position of the vaccine. Only vaccines with handlers
+     * have an entry.
+     */
+    private final Map<Integer, List<Consumer<Form>>> formDataHandlers = new HashMap<>();
+
+    /**
+     * Coalesces the {@link #selectionHandlers} of many changes. Until one is attached, a dispatcher that publishes
+     * every change immediately is created on the first change.
+     */
+    private SelectionDispatcher selectionDispatcher;
+
+    /**
+     * Constructs an empty selection over the vaccines of the provided {@link DataProvider}.
+     *
+     * @param dataProvider Source of supported vaccine data, possibly shared with other sessions.
+     */
     public VaccineSelector(DataProvider dataProvider) {
         this.dataProvider = dataProvider;
         this.vaccines = dataProvider.getVaccines();
         this.schemes = dataProvider.getSchemes();
+        this.registry = dataProvider.getRegistry();
+
+        for (int i = 0; i < schemes.size(); i++) {
+            schemePositions.put(schemes.get(i), i);
+        }
+    }
+
+    /**
+     * <strong>Bidirectionally bound to an HTML input check selector.</strong> Selects or deselects a vaccine, and
+     * reports the change to the {@link SelectionDispatcher}, which runs the selection handlers. Setting the current
+     * status again changes nothing, and runs no handlers.
+     * @param   vaccine
+     *          one of the supported vaccines.
+     * @param   selected
+     *          new status for the vaccine, directly from user input.
+     * @throws  IllegalArgumentException
+     *          if the vaccine isn't supported by the {@link DataProvider}.
+     */
+    public void setSelected(VaccineType vaccine, boolean selected) {
+        int position = positionOf(vaccine);
+        boolean previouslySelected = selectedVaccines.get(position);
+        if (selected == previouslySelected) {
+            return;
+        }
+        selectedVaccines.flip(position);
+        fingerprint ^= fingerprintOf(vaccine);
+        selectedVaccineList = null;
+        if (selectionDispatcher == null) {
+            new SelectionDispatcher().attach(this);
+        }
+        selectionDispatcher.selectionChanged(vaccine, previouslySelected);
+    }
+
+    /**
+     * <strong>Bidirectionally bound to an HTML radio selector.</strong> Checks or unchecks a scheme.
+     * @param   scheme
+     *          one of the supported schemes.
+     * @param   checked
+     *          current selection status of the scheme, based on user input.
+     * @throws  IllegalArgumentException
+     *          if the scheme isn't supported by the {@link DataProvider}.
+     */
+    public void setChecked(BaseScheme scheme, boolean checked) {
+        Integer position = schemePositions.get(scheme);
+        if (position == null) {
+            throw new IllegalArgumentException("Unsupported scheme: " + scheme);
+        }
+        if (checked != checkedSchemes.get(position)) {
+            checkedSchemes.flip(position);
+            selectedSchemeList = null;
+        }
+    }
+
+    /**
+     * <strong>Bidirectionally bound to an HTML radio selector.</strong>
+     * @param   scheme
+     *          the scheme in question.
+     * @return
+     *          <code>true</code> if it's one of the supported schemes, and checked.
+     */
+    public boolean isChecked(BaseScheme scheme) {
+        Integer position = schemePositions.get(scheme);
+        return position != null && checkedSchemes.get(position);
     }
 
+    /**
+     * Registers a function that will be executed whenever the given vaccine becomes selected/deselected in this
+     * session. Does NOT execute during registration - only when the selection changes.
+     * @param   vaccine
+     *          one of the supported vaccines.
+     * @param   handler
+     *          a function for handling selection/deselection. It receives the {@link SelectionChange} that
+     *          triggered it, which may include other vaccines too.
+     */
+    public void addSelectionHandler(VaccineType vaccine, Consumer<SelectionChange> handler) {
+        selectionHandlers.computeIfAbsent(positionOf(vaccine), position -> new ArrayList<>()).add(handler);
+    }
+
+    /**
+     * Registers a function that will be executed once for the given vaccine when the input {@link Form} of this
+     * session becomes submitted.
+     * @param   vaccine
+     *          one of the supported vaccines.
+     * @param   handler
+     *          a function for handling Form submission.
+     */
+    public void addFormDataHandler(VaccineType vaccine, Consumer<Form> handler) {
+        formDataHandlers.computeIfAbsent(positionOf(vaccine), position -> new ArrayList<>()).add(handler);
+    }
+
+    /**
+     * @return
+     *          a read-only view of the functions registered with
+     *          {@link #addSelectionHandler(VaccineType, Consumer)} for the given vaccine.
+     */
+    public List<Consumer<SelectionChange>> getSelectionHandlers(VaccineType vaccine) {
+        List<Consumer<SelectionChange>> handlers = selectionHandlers.get(positionOf(vaccine));
+        return handlers == null ? List.of() : Collections.unmodifiableList(handlers);
+    }
+
+    /**
+     * @return
+     *          a read-only view of the functions registered with {@link #addFormDataHandler(VaccineType, Consumer)}
+     *          for the given vaccine.
+     */
+    public List<Consumer<Form>> getFormDataHandlers(VaccineType vaccine) {
+        List<Consumer<Form>> handlers = formDataHandlers.get(positionOf(vaccine));
+        return handlers == null ? List.of() : Collections.unmodifiableList(handlers);
+    }
+
+    /**
+     * Routes the selection changes of this session through a {@link SelectionDispatcher}, which runs the selection
+     * handlers instead (see {@link SelectionDispatcher#attach(VaccineSelector)}).
+     * @param   selectionDispatcher
+     *          the dispatcher, or <code>null</code> to go back to one that publishes every change immediately.
+     */
+    void setSelectionDispatcher(SelectionDispatcher selectionDispatcher) {
+        this.selectionDispatcher = selectionDispatcher;
+    }
+
+    /**
+     * @return
+     *          the source of supported vaccine data.
+     */
+    public DataProvider getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * @return
+     *          a read-only list of the selected vaccines, in the order of the {@link DataProvider}. The same
+     *          instance is returned until the selection changes.
+     */
     public List<VaccineType> getSelectedVaccines() {
-        List<VaccineType> resultList = new ArrayList<>();
-        for (VaccineType vaccine : vaccines) {
-            if (vaccine.isSelected())
-                resultList.add(vaccine);
+        if (selectedVaccineList == null) {
+            List<VaccineType> resultList = new ArrayList<>(selectedVaccines.cardinality());
+            forEachSelectedVaccine(resultList::add);
+            selectedVaccineList = Collections.unmodifiableList(resultList);
         }
-        return resultList;
+        return selectedVaccineList;
     }
 
+    /**
+     * @return
+     *          a read-only list of the checked schemes, in the order of the {@link DataProvider}. The same instance
+     *          is returned until the selection changes.
+     */
     public List<BaseScheme> getSelectedSchemes() {
-        List<BaseScheme> resultList = new ArrayList<>();
-        for (BaseScheme scheme : schemes) {
-            if (scheme.isChecked())
-                resultList.add(scheme);
+        if (selectedSchemeList == null) {
+            List<BaseScheme> resultList = new ArrayList<>(checkedSchemes.cardinality());
+            for (int i = checkedSchemes.nextSetBit(0); i >= 0; i = checkedSchemes.nextSetBit(i + 1)) {
+                resultList.add(schemes.get(i));
+            }
+            selectedSchemeList = Collections.unmodifiableList(resultList);
         }
-        return resultList;
+        return selectedSchemeList;
     }
 
+    /**
+     * Performs the given action for every selected vaccine, in the order of the {@link DataProvider}, without
+     * allocating anything.
+     * @param   action
+     *          the action to perform.
+     */
+    public void forEachSelectedVaccine(Consumer<? super VaccineType> action) {
+        for (int i = selectedVaccines.nextSetBit(0); i >= 0; i = selectedVaccines.nextSetBit(i + 1)) {
+            action.accept(vaccines.get(i));
+        }
+    }
 
+    /**
+     * Checks whether a vaccine is selected, in O(1).
+     * @param   vaccine
+     *          the vaccine in question.
+     * @return
+     *          <code>true</code> if it's one of the supported vaccines, and selected.
+     */
+    public boolean isSelected(VaccineType vaccine) {
+        int position = registry.getPosition(vaccine);
+        return position >= 0 && selectedVaccines.get(position);
+    }
+
+    /**
+     * @return
+     *          the number of selected vaccines.
+     */
+    public int getSelectedCount() {
+        return selectedVaccines.cardinality();
+    }
+
+    private int positionOf(VaccineType vaccine) {
+        int position = registry.getPosition(vaccine);
+        if (position < 0) {
+            throw new IllegalArgumentException("Unsupported vaccine: " + vaccine);
+        }
+        return position;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the current selection, in O(1). Equal selections always have equal
+     * fingerprints; different selections almost never do, but callers that can't tolerate a collision have to
+     * compare the selections themselves.
+     * @return
+     *          the fingerprint, equal to {@link #fingerprintOf(Collection)} of the selected vaccines.
+     */
+    public long getSelectionFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Computes the fingerprint of any collection of vaccines, see {@link #getSelectionFingerprint()}. The order of
+     * the vaccines doesn't matter.
+     * @param   vaccines
+     *          the vaccines, without duplicates.
+     * @return
+     *          the fingerprint.
+     */
+    public static long fingerprintOf(Collection<VaccineType> vaccines) {
+        long result = 0;
+        for (VaccineType vaccine : vaccines) {
+            result ^= fingerprintOf(vaccine);
+        }
+        return result;
+    }
+
+    /**
+     * Spreads the ID of a vaccine over 64 bits (using the SplitMix64 finalizer), so that XOR-ing the fingerprints of
+     * a selection is unlikely to collide with any other selection.
+     */
+    private static long fingerprintOf(VaccineType vaccine) {
+        long z = vaccine.getId() + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
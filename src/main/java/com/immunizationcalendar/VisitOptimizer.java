@@ -0,0 +1,454 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.CompiledScheme;
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules the doses of a selection of {@link VaccineType}s so that the child has to visit the clinic as few times
+ * as possible.
+ *
+ * <p>Unlike the {@link ScheduleGenerator}, which always takes the lower bound of every recommended offset, the
+ * optimizer may place each dose anywhere within its window: from the previous dose (or the start point) plus
+ * <code>max(minOffset, recommended[0])</code>, up to the previous dose plus <code>recommended[1]</code>. No dose
+ * may fall after the scheme's <code>maxAge</code>, and every dose included by the ScheduleGenerator is included
+ * here as well - windows are narrowed, where needed, so that the remaining doses of a vaccine still fit.</p>
+ *
+ * <p>The search is a depth-first branch and bound over the date of the next visit, where each visit administers
+ * every dose whose window has opened. A visit is only ever placed on the earliest date of some dose, or on the
+ * earliest deadline (which is what the greedy solution always picks). Branches that can't beat the best solution
+ * so far are pruned, using the number of distinct days each vaccine still needs. The search runs within a fixed time
+ * budget; when the budget runs out, the best solution found so far (at worst the greedy one) is returned. Large
+ * selections split the search across the cores of a {@link ForkJoinPool}.</p>
+ */
+public class VisitOptimizer {
+
+    /**
+     * Default time budget of a single {@link #optimize(TinyDate, TinyDate, List)}, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 50;
+
+    /**
+     * Minimum number of doses for which the search is split across cores.
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    /**
+     * Number of search nodes between two checks of the clock.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    /**
+     * The pool running large searches.
+     */
+    private final ForkJoinPool pool;
+
+    private final long timeBudgetNanos;
+
+    /**
+     * Constructs an optimizer with the default time budget, running on the common {@link ForkJoinPool}.
+     */
+    public VisitOptimizer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TIME_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs an optimizer.
+     * @param   pool
+     *          the pool running large searches.
+     * @param   timeBudget
+     *          the maximum duration of the search. Preparing and returning the result comes on top of it, but is
+     *          linear in the number of doses.
+     * @param   unit
+     *          the unit of <code>timeBudget</code>.
+     */
+    public VisitOptimizer(ForkJoinPool pool, long timeBudget, TimeUnit unit) {
+        this.pool = pool;
+        this.timeBudgetNanos = unit.toNanos(timeBudget);
+    }
+
+    /**
+     * Finds the schedule with the fewest visits.
+     * @param   startDate
+     *          the date of the first vaccination, from which the offsets are measured.
+     * @param   dateOfBirth
+     *          the child's date of birth, used to apply each scheme's <code>maxAge</code>.
+     * @param   vaccines
+     *          the selected vaccines.
+     * @return
+     *          the best schedule found within the time budget.
+     */
+    public Result optimize(TinyDate startDate, TinyDate dateOfBirth, List<VaccineType> vaccines) {
+        Problem problem = new Problem(startDate.toEpochDay(), dateOfBirth.toEpochDay(), vaccines,
+                System.nanoTime() + timeBudgetNanos);
+
+        Search greedy = new Search(problem);
+        int visits = 0;
+        while (!greedy.isDone()) {
+            greedy.apply(greedy.getEarliestDeadline());
+            visits++;
+        }
+        problem.offer(visits, greedy.days);
+
+        Search root = new Search(problem);
+        int[] candidates = root.getCandidates();
+        if (problem.totalDoses >= PARALLEL_THRESHOLD && candidates.length > 1) {
+            //a parallel stream started from within a pool runs on that pool
+            pool.submit(() -> Arrays.stream(candidates).parallel()
+                            .forEach(day -> new Search(problem).branch(day, 0)))
+                    .join();
+        } else {
+            for (int day : candidates) {
+                root.branch(day, 0);
+            }
+        }
+        return new Result(problem.types, problem.bestDays, problem.best.get(), !problem.timedOut);
+    }
+
+    /**
+     * The (immutable) input of a single optimization, and the best solution so far.
+     */
+    private static final class Problem {
+        private final int start;
+        private final VaccineType[] types;
+
+        /**
+         * Number of doses of every vaccine that have to be scheduled.
+         */
+        private final int[] doses;
+        private final int totalDoses;
+
+        /**
+         * Lower and upper bound of every dose's offset from the previous dose (or the start point).
+         */
+        private final int[][] minOffsets;
+        private final int[][] maxOffsets;
+
+        /**
+         * Latest epoch day of every dose which still leaves enough time for the following doses of the vaccine.
+         */
+        private final int[][] deadlines;
+
+        /**
+         * Number of distinct days needed by every dose and the ones following it.
+         */
+        private final int[][] daysNeeded;
+
+        private final long deadlineNanos;
+        private volatile boolean timedOut;
+
+        private final AtomicInteger best = new AtomicInteger(Integer.MAX_VALUE);
+        private int[][] bestDays;
+
+        private Problem(int start, int dateOfBirth, List<VaccineType> vaccines, long deadlineNanos) {
+            this.start = start;
+            this.deadlineNanos = deadlineNanos;
+            int n = vaccines.size();
+            this.types = vaccines.toArray(new VaccineType[0]);
+            this.doses = new int[n];
+            this.minOffsets = new int[n][];
+            this.maxOffsets = new int[n][];
+            this.deadlines = new int[n][];
+            this.daysNeeded = new int[n][];
+
+            int total = 0;
+            for (int v = 0; v < n; v++) {
+                CompiledScheme scheme = types[v].getVaccineScheme().compile();
+                int numberOfDoses = scheme.getNumberOfDoses();
+                long limit = scheme.isAgeLimited() ? (long) dateOfBirth + scheme.getMaxAge() : Integer.MAX_VALUE;
+
+                //only the doses that the ScheduleGenerator would include
+                int[] lower = new int[numberOfDoses];
+                int[] upper = new int[numberOfDoses];
+                int count = 0;
+                long day = start;
+                for (int dose = 1; dose <= numberOfDoses; dose++) {
+                    lower[dose - 1] = scheme.getOffset(dose);
+                    upper[dose - 1] = scheme.getMaxOffset(dose);
+                    day += lower[dose - 1];
+                    if (day > limit) {
+                        break;
+                    }
+                    count++;
+                }
+                doses[v] = count;
+                minOffsets[v] = lower;
+                maxOffsets[v] = upper;
+                deadlines[v] = new int[count];
+                daysNeeded[v] = new int[count + 1];
+                long tail = 0;
+                for (int dose = count - 1; dose >= 0; dose--) {
+                    deadlines[v][dose] = (int) Math.min(limit - tail, Integer.MAX_VALUE);
+                    tail += lower[dose];
+                    //a dose that may share its day with the previous one doesn't need a day of its own
+                    daysNeeded[v][dose] = daysNeeded[v][dose + 1] + (dose == 0 || lower[dose] > 0 ? 1 : 0);
+                }
+                total += count;
+            }
+            this.totalDoses = total;
+        }
+
+        /**
+         * Keeps a solution, if it's better than the best one so far.
+         */
+        private synchronized void offer(int visits, int[][] days) {
+            if (visits < best.get()) {
+                int[][] copy = new int[days.length][];
+                for (int v = 0; v < days.length; v++) {
+                    copy[v] = days[v].clone();
+                }
+                bestDays = copy;
+                best.set(visits);
+            }
+        }
+    }
+
+    /**
+     * The state of a (partial) schedule, explored depth-first. Every thread uses its own instance.
+     */
+    private static final class Search {
+        private final Problem problem;
+
+        /**
+         * Index of the next unscheduled dose of every vaccine.
+         */
+        private final int[] next;
+
+        /**
+         * Epoch day of the last scheduled dose of every vaccine (or the start point).
+         */
+        private final int[] previous;
+
+        /**
+         * Epoch day of every scheduled dose.
+         */
+        private final int[][] days;
+
+        private long nodes;
+
+        private Search(Problem problem) {
+            this.problem = problem;
+            int n = problem.types.length;
+            this.next = new int[n];
+            this.previous = new int[n];
+            this.days = new int[n][];
+            Arrays.fill(previous, problem.start);
+            for (int v = 0; v < n; v++) {
+                days[v] = new int[problem.doses[v]];
+            }
+        }
+
+        private boolean isActive(int v) {
+            return next[v] < problem.doses[v];
+        }
+
+        private boolean isDone() {
+            for (int v = 0; v < next.length; v++) {
+                if (isActive(v)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int getEarliest(int v) {
+            return previous[v] + problem.minOffsets[v][next[v]];
+        }
+
+        private int getLatest(int v) {
+            return (int) Math.min((long) previous[v] + problem.maxOffsets[v][next[v]], problem.deadlines[v][next[v]]);
+        }
+
+        private int getEarliestDeadline() {
+            int deadline = Integer.MAX_VALUE;
+            for (int v = 0; v < next.length; v++) {
+                if (isActive(v)) {
+                    deadline = Math.min(deadline, getLatest(v));
+                }
+            }
+            return deadline;
+        }
+
+        /**
+         * Lists the dates worth trying for the next visit, best guesses (latest dates, most doses) first.
+         */
+        private int[] getCandidates() {
+            int deadline = getEarliestDeadline();
+            if (deadline == Integer.MAX_VALUE) {
+                return new int[0];
+            }
+            int[] candidates = new int[next.length + 1];
+            int count = 0;
+            candidates[count++] = deadline;
+            for (int v = 0; v < next.length; v++) {
+                if (isActive(v) && getEarliest(v) < deadline) {
+                    candidates[count++] = getEarliest(v);
+                }
+            }
+            Arrays.sort(candidates, 0, count);
+
+            int[] distinct = new int[count];
+            int size = 0;
+            for (int i = count - 1; i >= 0; i--) {
+                if (size == 0 || distinct[size - 1] != candidates[i]) {
+                    distinct[size++] = candidates[i];
+                }
+            }
+            return Arrays.copyOf(distinct, size);
+        }
+
+        /**
+         * A lower bound for the number of visits still needed.
+         */
+        private int getBound() {
+            int bound = 0;
+            for (int v = 0; v < next.length; v++) {
+                bound = Math.max(bound, problem.daysNeeded[v][next[v]]);
+            }
+            return bound;
+        }
+
+        /**
+         * Schedules a visit on the given day, administering every dose whose window has opened (including following
+         * doses of the same vaccine that may be given on the same day).
+         * @return
+         *          the vaccine of every administered dose.
+         */
+        private int[] apply(int day) {
+            int[] administered = new int[problem.totalDoses];
+            int count = 0;
+            for (int v = 0; v < next.length; v++) {
+                while (isActive(v) && getEarliest(v) <= day) {
+                    days[v][next[v]] = day;
+                    next[v]++;
+                    previous[v] = day;
+                    administered[count++] = v;
+                }
+            }
+            return Arrays.copyOf(administered, count);
+        }
+
+        /**
+         * Tries a visit on the given day, and everything that can follow it.
+         */
+        private void branch(int day, int visits) {
+            int[] administered = apply(day);
+
+            search(visits + 1);
+
+            for (int i = administered.length - 1; i >= 0; i--) {
+                int v = administered[i];
+                next[v]--;
+                previous[v] = next[v] == 0 ? problem.start : days[v][next[v] - 1];
+            }
+        }
+
+        private void search(int visits) {
+            if (problem.timedOut) {
+                return;
+            }
+            if (++nodes % CHECK_INTERVAL == 0 && System.nanoTime() > problem.deadlineNanos) {
+                problem.timedOut = true;
+                return;
+            }
+            if (visits + getBound() >= problem.best.get()) {
+                return;
+            }
+            if (isDone()) {
+                problem.offer(visits, days);
+                return;
+            }
+            for (int day : getCandidates()) {
+                branch(day, visits);
+            }
+        }
+    }
+
+    /**
+     * The outcome of {@link #optimize(TinyDate, TinyDate, List)}.
+     */
+    public static class Result {
+        private final VaccineType[] types;
+        private final int[][] days;
+        private final int visits;
+        private final boolean optimal;
+
+        private Result(VaccineType[] types, int[][] days, int visits, boolean optimal) {
+            this.types = types;
+            this.days = days;
+            this.visits = visits;
+            this.optimal = optimal;
+        }
+
+        /**
+         * @return
+         *          the number of visits (distinct days) of the schedule.
+         */
+        public int getVisits() {
+            return visits;
+        }
+
+        /**
+         * @return
+         *          <code>true</code> if the search finished within the time budget, so no schedule of this kind has
+         *          fewer visits.
+         */
+        public boolean isOptimal() {
+            return optimal;
+        }
+
+        /**
+         * @return
+         *          a new, mutable list of {@link ScheduleForDay}s, sorted from earliest to latest. Doses on the same
+         *          day are ordered like the selected vaccines.
+         */
+        public List<ScheduleForDay> getDates() {
+            int count = 0;
+            for (int[] vaccineDays : days) {
+                count += vaccineDays.length;
+            }
+            //same packed keys as in ScheduleTemplate: the day in the upper half, the dose in the lower one
+            long[] keys = new long[count];
+            int i = 0;
+            for (int v = 0; v < days.length; v++) {
+                for (int dose = 0; dose < days[v].length; dose++) {
+                    keys[i] = ((long) days[v][dose] << 32) | ((long) v << 16) | dose;
+                    i++;
+                }
+            }
+            Arrays.sort(keys);
+
+            List<ScheduleForDay> scheduledDates = new ArrayList<>();
+            List<Dose> dosesAtDate = null;
+            TinyDate date = null;
+            for (long key : keys) {
+                int day = (int) (key >> 32);
+                if (date == null || date.toEpochDay() != day) {
+                    date = TinyDate.ofEpochDay(day);
+                    dosesAtDate = new ArrayList<>();
+                    scheduledDates.add(new ScheduleForDay(date, dosesAtDate));
+                }
+                VaccineType type = types[(int) (key >>> 16) & 0xFFFF];
+                int dose = (int) key & 0xFFFF;
+                dosesAtDate.add(new Dose(type, date, type.getAltName(dose)));
+            }
+            return scheduledDates;
+        }
+
+        /**
+         * @return
+         *          a new calendar holding this schedule.
+         */
+        public VaccinationCalendar toCalendar() {
+            return new VaccinationCalendar(Arrays.asList(types), getDates());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Compiles the catalog of any {@link IVaccineSourceNew} into a compact binary snapshot, which can be opened almost
+ * instantly by a {@link SnapshotVaccineSource}.
+ *
+ * <p>All numbers are big-endian <code>int</code>s (or <code>long</code>s for masks). The file starts with a
+ * header:</p>
+ * <pre>
+ * magic ("VCAT"), version, payload length, CRC32 of the payload
+ * </pre>
+ * <p>followed by the payload:</p>
+ * <pre>
+ * string count, string offsets (count + 1), UTF-8 bytes of every string
+ * disease count, per disease: name, recommendation (ordinal), default vaccine (index)
+ * vaccine count, mask words, vaccine record offsets (relative to the payload)
+ * per vaccine: name, disease mask (mask words), tag mask, description,
+ *              alt name count, alt names,
+ *              doses, maxAge,
+ *              min offset count, (dose, offset) pairs,
+ *              recommended offset count, (dose, length, offsets) triples
+ * </pre>
+ * <p>Strings are stored once in the string table, and referred to by index. Missing strings and references are
+ * <code>-1</code>, missing offsets are {@link Integer#MIN_VALUE}. Display boxes are not part of the snapshot.</p>
+ */
+public final class CatalogSnapshotCompiler {
+
+    static final int MAGIC = 0x56434154;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int NULL_OFFSET = Integer.MIN_VALUE;
+
+    private CatalogSnapshotCompiler() {
+    }
+
+    /**
+     * Compiles a catalog. The file is written next to the target and then moved into place, so readers never see
+     * a partially written snapshot.
+     * @param   source
+     *          the catalog.
+     * @param   target
+     *          the snapshot file, replaced if it exists.
+     * @throws  IOException
+     *          if writing fails, or a vaccine refers to a disease outside of the catalog.
+     */
+    public static void compile(IVaccineSourceNew source, Path target) throws IOException {
+        byte[] payload = compilePayload(source.getVaccines(), source.getDiseases(), source.getDefaultVaccines());
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(HEADER_SIZE + payload.length);
+        DataOutputStream header = new DataOutputStream(file);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(payload.length);
+        header.writeInt((int) crc.getValue());
+        header.write(payload);
+        header.flush();
+
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absoluteTarget.getParent(), absoluteTarget.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, file.toByteArray());
+            Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static byte[] compilePayload(List<VaccineType> vaccines, List<Disease> diseases,
+                                         Map<Disease, VaccineType> defaultVaccines) throws IOException {
+        StringTable strings = new StringTable();
+        Map<Disease, Integer> diseaseIndices = new IdentityHashMap<>();
+        for (Disease disease : diseases) {
+            diseaseIndices.putIfAbsent(disease, diseaseIndices.size());
+        }
+        Map<VaccineType, Integer> vaccineIndices = new IdentityHashMap<>();
+        for (VaccineType vaccine : vaccines) {
+            vaccineIndices.putIfAbsent(vaccine, vaccineIndices.size());
+        }
+        int maskWords = (diseases.size() + Long.SIZE - 1) / Long.SIZE;
+
+        //the records first, since the string table (which precedes them) is only complete afterwards
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        int[] recordOffsets = new int[vaccines.size()];
+        for (int i = 0; i < vaccines.size(); i++) {
+            recordOffsets[i] = records.size();
+            writeVaccine(records, vaccines.get(i), strings, diseaseIndices, maskWords);
+        }
+        int[] diseaseNames = new int[diseases.size()];
+        for (int i = 0; i < diseases.size(); i++) {
+            diseaseNames[i] = strings.indexOf(diseases.get(i).getName());
+        }
+        records.flush();
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(recordBytes.size() * 2);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        strings.writeTo(payload);
+
+        payload.writeInt(diseases.size());
+        for (int i = 0; i < diseases.size(); i++) {
+            Disease disease = diseases.get(i);
+            payload.writeInt(diseaseNames[i]);
+            payload.writeInt(disease.getRecommendation().ordinal());
+            Integer defaultVaccine = vaccineIndices.get(defaultVaccines.get(disease));
+            payload.writeInt(defaultVaccine == null ? -1 : defaultVaccine);
+        }
+
+        payload.writeInt(vaccines.size());
+        payload.writeInt(maskWords);
+        int recordsStart = payload.size() + vaccines.size() * Integer.BYTES;
+        for (int offset : recordOffsets) {
+            payload.writeInt(recordsStart + offset);
+        }
+        recordBytes.writeTo(payload);
+        payload.flush();
+        return payloadBytes.toByteArray();
+    }
+
+    private static void writeVaccine(DataOutputStream out, VaccineType vaccine, StringTable strings,
+                                     Map<Disease, Integer> diseaseIndices, int maskWords) throws IOException {
+        out.writeInt(strings.indexOf(vaccine.getName()));
+
+        long[] mask = new long[maskWords];
+        for (Disease disease : vaccine.getDisease()) {
+            Integer index = diseaseIndices.get(disease);
+            if (index == null) {
+                throw new IOException("Vaccine " + vaccine.getName() + " refers to a disease outside of the catalog: "
+                        + disease.getName());
+            }
+            mask[index / Long.SIZE] |= 1L << index;
+        }
+        for (long word : mask) {
+            out.writeLong(word);
+        }
+
+        int tags = 0;
+        for (VaccTag tag : vaccine.getTags()) {
+            tags |= 1 << tag.ordinal();
+        }
+        out.writeInt(tags);
+        out.writeInt(strings.indexOf(vaccine.getDescription()));
+
+        List<String> altNames = vaccine.getAltNames();
+        out.writeInt(altNames.size());
+        for (String altName : altNames) {
+            out.writeInt(strings.indexOf(altName));
+        }
+
+        VaccineScheme scheme = vaccine.getVaccineScheme();
+        out.writeInt(scheme.getNumberOfDoses());
+        out.writeInt(scheme.getMaxAge());
+
+        //sorted, so equal catalogs always compile to equal bytes
+        Map<Integer, Integer> minOffsets = new TreeMap<>(scheme.getMinOffsets());
+        minOffsets.values().removeIf(offset -> offset == null);
+        out.writeInt(minOffsets.size());
+        for (Map.Entry<Integer, Integer> entry : minOffsets.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+
+        Map<Integer, Integer[]> recommendedOffsets = new TreeMap<>(scheme.getRecommendedOffsets());
+        recommendedOffsets.values().removeIf(range -> range == null);
+        out.writeInt(recommendedOffsets.size());
+        for (Map.Entry<Integer, Integer[]> entry : recommendedOffsets.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            for (Integer offset : entry.getValue()) {
+                out.writeInt(offset == null ? NULL_OFFSET : offset);
+            }
+        }
+    }
+
+    /**
+     * Deduplicated strings, in order of first use.
+     */
+    private static final class StringTable {
+
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+
+        int indexOf(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer index = indices.get(string);
+            if (index == null) {
+                index = encoded.size();
+                indices.put(string, index);
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+            return index;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(encoded.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                offset += bytes.length;
+                out.writeInt(offset);
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.immunizationcalendar.model.VaccineType;
 
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * A source of data (incl. {@link VaccineType}s and their initial settings) for a given "vaccination plan" or
@@ -18,4 +19,12 @@ public interface IVaccineSourceNew {
      */
     List<VaccineType> getVaccines();
     List<Disease> getDiseases();
+
+    /**
+     * Supplies the vaccine used by default against each disease of this plan.
+     * @return
+     *          a read-only map from the diseases of {@link #getDiseases()} to vaccines of {@link #getVaccines()}.
+     *          Diseases without a default vaccine aren't part of it.
+     */
+    Map<Disease, VaccineType> getDefaultVaccines();
 }
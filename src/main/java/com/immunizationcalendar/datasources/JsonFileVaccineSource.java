@@ -0,0 +1,359 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.datasources.JsonPullParser.Token;
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.Recommendation;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source of vaccination data read from a JSON catalog on disk.
+ *
+ * <p>The catalog is streamed through a {@link JsonPullParser}, and the {@link Disease}, {@link VaccineType} and
+ * {@link VaccineScheme} objects are created as soon as their JSON object has been read, so the whole graph is built
+ * in a single pass, without an intermediate tree. The expected format is:</p>
+ * <pre>
+ * {
+ *   "diseases": [
+ *     {"name": "...", "recommendation": "MANDATORY", "defaultVaccine": "..."}
+ *   ],
+ *   "vaccines": [
+ *     {
+ *       "name": "...",
+ *       "diseases": ["..."],
+ *       "altNames": ["...", "..."],
+ *       "tags": ["INJECTION", "LIVE"],
+ *       "description": "...",
+ *       "scheme": {
+ *         "doses": 2,
+ *         "minOffsets": [0, 28],
+ *         "recommendedOffsets": [[0, 0], [42, 60]],
+ *         "maxAge": 365
+ *       }
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * <p>Diseases have to be listed before the vaccines that refer to them, and their names have to be unique. Every
+ * member except the names is optional, and unknown members are skipped. A missing <code>maxAge</code> means no limit. If <code>altNames</code> are given,
+ * there has to be exactly one per dose.</p>
+ */
+public class JsonFileVaccineSource implements IVaccineSourceNew {
+
+    private final Path path;
+    private final List<Disease> diseases = new ArrayList<>();
+    private final List<VaccineType> vaccines = new ArrayList<>();
+
+    /**
+     * Diseases by name, to resolve the references of vaccines.
+     */
+    private final Map<String, Disease> diseasesByName = new HashMap<>();
+
+    /**
+     * Name of the default vaccine of every disease, resolved once all vaccines are known.
+     */
+    private final Map<Disease, String> defaultVaccineNames = new HashMap<>();
+
+    private final Map<Disease, VaccineType> defaultVaccines = new HashMap<>();
+
+    private final long loadTimeNanos;
+    private final long heapBytes;
+
+    /**
+     * Loads a catalog.
+     * @param   path
+     *          the JSON file, encoded in UTF-8.
+     * @throws  IOException
+     *          if the file can't be read, or isn't a valid catalog.
+     */
+    public JsonFileVaccineSource(Path path) throws IOException {
+        this.path = path;
+        Runtime runtime = Runtime.getRuntime();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        try (JsonPullParser parser = new JsonPullParser(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            readCatalog(parser);
+        } catch (IllegalArgumentException e) {
+            //unknown enum constants
+            throw new IOException("Invalid catalog " + path + ": " + e.getMessage(), e);
+        }
+
+        this.loadTimeNanos = System.nanoTime() - start;
+        this.heapBytes = Math.max(0, runtime.totalMemory() - runtime.freeMemory() - heapBefore);
+    }
+
+    private void readCatalog(JsonPullParser parser) throws IOException {
+        parser.expect(Token.BEGIN_OBJECT);
+        while (parser.next() == Token.NAME) {
+            switch (parser.getString()) {
+                case "diseases" -> {
+                    parser.expect(Token.BEGIN_ARRAY);
+                    while (parser.next() == Token.BEGIN_OBJECT) {
+                        readDisease(parser);
+                    }
+                }
+                case "vaccines" -> {
+                    parser.expect(Token.BEGIN_ARRAY);
+                    while (parser.next() == Token.BEGIN_OBJECT) {
+                        readVaccine(parser);
+                    }
+                }
+                default -> parser.skipValue();
+            }
+        }
+        parser.expect(Token.END_DOCUMENT);
+
+        Map<String, VaccineType> vaccinesByName = new HashMap<>(vaccines.size() * 2);
+        for (VaccineType vaccine : vaccines) {
+            vaccinesByName.putIfAbsent(vaccine.getName(), vaccine);
+        }
+        for (Map.Entry<Disease, String> entry : defaultVaccineNames.entrySet()) {
+            VaccineType vaccine = vaccinesByName.get(entry.getValue());
+            if (vaccine == null) {
+                throw new IOException("Unknown default vaccine: " + entry.getValue());
+            }
+            defaultVaccines.put(entry.getKey(), vaccine);
+        }
+    }
+
+    /**
+     * Reads a disease, after its {@link Token#BEGIN_OBJECT}.
+     */
+    private void readDisease(JsonPullParser parser) throws IOException {
+        String name = null;
+        Recommendation recommendation = Recommendation.OPTIONAL;
+        String defaultVaccine = null;
+        while (parser.next() == Token.NAME) {
+            switch (parser.getString()) {
+                case "name" -> name = readString(parser);
+                case "recommendation" -> {
+                    String value = readString(parser);
+                    if (value != null) {
+                        recommendation = Recommendation.valueOf(value);
+                    }
+                }
+                case "defaultVaccine" -> defaultVaccine = readString(parser);
+                default -> parser.skipValue();
+            }
+        }
+        if (name == null) {
+            throw new IOException("Disease without a name");
+        }
+        if (diseasesByName.containsKey(name)) {
+            throw new IOException("Duplicate disease: " + name);
+        }
+        Disease disease = new Disease(name, recommendation);
+        diseases.add(disease);
+        diseasesByName.put(name, disease);
+        if (defaultVaccine != null) {
+            defaultVaccineNames.put(disease, defaultVaccine);
+        }
+    }
+
+    /**
+     * Reads a vaccine (with its scheme), after its {@link Token#BEGIN_OBJECT}.
+     */
+    private void readVaccine(JsonPullParser parser) throws IOException {
+        VaccineType.Builder builder = new VaccineType.Builder();
+        String name = null;
+        String[] altNames = null;
+        VaccineScheme scheme = new VaccineScheme();
+        while (parser.next() == Token.NAME) {
+            switch (parser.getString()) {
+                case "name" -> name = readString(parser);
+                case "diseases" -> {
+                    List<Disease> vaccineDiseases = new ArrayList<>();
+                    for (String diseaseName : readStrings(parser)) {
+                        Disease disease = diseasesByName.get(diseaseName);
+                        if (disease == null) {
+                            throw new IOException("Unknown disease: " + diseaseName);
+                        }
+                        vaccineDiseases.add(disease);
+                    }
+                    builder.withDisease(vaccineDiseases);
+                }
+                case "altNames" -> altNames = readStrings(parser).toArray(new String[0]);
+                case "tags" -> {
+                    for (String tag : readStrings(parser)) {
+                        if (tag != null) {
+                            builder.withTags(VaccTag.valueOf(tag));
+                        }
+                    }
+                }
+                case "description" -> builder.withDescription(readString(parser));
+                case "scheme" -> scheme = readScheme(parser);
+                default -> parser.skipValue();
+            }
+        }
+        if (name == null) {
+            throw new IOException("Vaccine without a name");
+        }
+        if (altNames != null) {
+            //one name per dose, see VaccineType#getAltName(int)
+            if (altNames.length != scheme.getNumberOfDoses()) {
+                throw new IOException("Vaccine " + name + " has " + altNames.length + " alt names for "
+                        + scheme.getNumberOfDoses() + " doses");
+            }
+            builder.withAltNames(altNames);
+        }
+        vaccines.add(builder.withVaccineSceheme(scheme).create(name));
+    }
+
+    private VaccineScheme readScheme(JsonPullParser parser) throws IOException {
+        parser.expect(Token.BEGIN_OBJECT);
+        int doses = 0;
+        int maxAge = Integer.MAX_VALUE;
+        HashMap<Integer, Integer> minOffsets = new HashMap<>();
+        HashMap<Integer, Integer[]> recommendedOffsets = new HashMap<>();
+        int lastDose = 1;
+        while (parser.next() == Token.NAME) {
+            switch (parser.getString()) {
+                case "doses" -> doses = readInt(parser, doses);
+                case "maxAge" -> maxAge = readInt(parser, maxAge);
+                case "minOffsets" -> {
+                    List<Integer> offsets = readIntegers(parser);
+                    for (int i = 0; i < offsets.size(); i++) {
+                        if (offsets.get(i) != null) {
+                            minOffsets.put(i + 1, offsets.get(i));
+                        }
+                    }
+                    lastDose = Math.max(lastDose, offsets.size());
+                }
+                case "recommendedOffsets" -> {
+                    parser.expect(Token.BEGIN_ARRAY);
+                    int dose = 1;
+                    for (Token token = parser.next(); token != Token.END_ARRAY; token = parser.next(), dose++) {
+                        if (token == Token.NULL) {
+                            continue;
+                        }
+                        if (token != Token.BEGIN_ARRAY) {
+                            throw new IOException("Expected a range of offsets, got " + token);
+                        }
+                        recommendedOffsets.put(dose, readIntegersAfterBegin(parser).toArray(new Integer[0]));
+                    }
+                    lastDose = Math.max(lastDose, dose - 1);
+                }
+                default -> parser.skipValue();
+            }
+        }
+        return new VaccineScheme(doses > 0 ? doses : lastDose, minOffsets, recommendedOffsets, maxAge);
+    }
+
+    private static String readString(JsonPullParser parser) throws IOException {
+        Token token = parser.next();
+        if (token == Token.NULL) {
+            return null;
+        }
+        if (token != Token.STRING) {
+            throw new IOException("Expected a string, got " + token);
+        }
+        return parser.getString();
+    }
+
+    /**
+     * Reads a number, or <code>null</code>.
+     * @param   defaultValue
+     *          the result for <code>null</code>.
+     */
+    private static int readInt(JsonPullParser parser, int defaultValue) throws IOException {
+        Token token = parser.next();
+        if (token == Token.NULL) {
+            return defaultValue;
+        }
+        if (token != Token.NUMBER) {
+            throw new IOException("Expected a number, got " + token);
+        }
+        return parser.getInt();
+    }
+
+    private static List<String> readStrings(JsonPullParser parser) throws IOException {
+        parser.expect(Token.BEGIN_ARRAY);
+        List<String> strings = new ArrayList<>();
+        for (Token token = parser.next(); token != Token.END_ARRAY; token = parser.next()) {
+            if (token == Token.NULL) {
+                strings.add(null);
+            } else if (token == Token.STRING) {
+                strings.add(parser.getString());
+            } else {
+                throw new IOException("Expected a string, got " + token);
+            }
+        }
+        return strings;
+    }
+
+    private static List<Integer> readIntegers(JsonPullParser parser) throws IOException {
+        parser.expect(Token.BEGIN_ARRAY);
+        return readIntegersAfterBegin(parser);
+    }
+
+    private static List<Integer> readIntegersAfterBegin(JsonPullParser parser) throws IOException {
+        List<Integer> integers = new ArrayList<>();
+        for (Token token = parser.next(); token != Token.END_ARRAY; token = parser.next()) {
+            integers.add(token == Token.NULL ? null : parser.getInt());
+        }
+        return integers;
+    }
+
+    @Override
+    public List<VaccineType> getVaccines() {
+        return Collections.unmodifiableList(vaccines);
+    }
+
+    @Override
+    public List<Disease> getDiseases() {
+        return Collections.unmodifiableList(diseases);
+    }
+
+    @Override
+    public Map<Disease, VaccineType> getDefaultVaccines() {
+        return Collections.unmodifiableMap(defaultVaccines);
+    }
+
+    /**
+     * @return
+     *          the file this catalog was loaded from.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return
+     *          the time it took to read the catalog and build the object graph, in nanoseconds.
+     */
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    /**
+     * @return
+     *          the growth of the used heap during loading, in bytes. This is only an estimate (garbage collection
+     *          may run in the meantime), but it's dominated by the retained object graph for large catalogs.
+     */
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "JsonFileVaccineSource{" +
+                "path=" + path +
+                ", diseases=" + diseases.size() +
+                ", vaccines=" + vaccines.size() +
+                ", loadTimeMillis=" + loadTimeNanos / 1_000_000 +
+                ", heapKiB=" + heapBytes / 1024 +
+                '}';
+    }
+}
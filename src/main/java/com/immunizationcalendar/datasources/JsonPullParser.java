@@ -0,0 +1,380 @@
+package com.immunizationcalendar.datasources;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal streaming (pull) parser for JSON documents. It never builds a tree: the caller asks for one {@link Token}
+ * at a time with {@link #next()}, and reads the text of names, strings and numbers from the parser itself. Input is
+ * read through a single fixed-size buffer, so memory use doesn't depend on the size of the document.
+ *
+ * <p>Syntax errors are reported as {@link IOException}s, with the line and column of the offending character.</p>
+ */
+public final class JsonPullParser implements Closeable {
+
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        /**
+         * The name of an object member. It's always followed by the member's value.
+         */
+        NAME,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL,
+        END_DOCUMENT
+    }
+
+    //what the parser expects next, for every level of nesting
+    private static final byte DOCUMENT_START = 0;
+    private static final byte DOCUMENT_END = 1;
+    private static final byte OBJECT_FIRST = 2;
+    private static final byte OBJECT_NEXT = 3;
+    private static final byte OBJECT_VALUE = 4;
+    private static final byte ARRAY_FIRST = 5;
+    private static final byte ARRAY_NEXT = 6;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int column;
+
+    private byte[] states = new byte[32];
+    private int depth;
+
+    /**
+     * Text of the last {@link Token#NAME}, {@link Token#STRING} or {@link Token#NUMBER}.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    private Token token;
+
+    /**
+     * Constructs a parser. The reader doesn't need to be buffered.
+     * @param   reader
+     *          the source of the document. Closed by {@link #close()}.
+     */
+    public JsonPullParser(Reader reader) {
+        this.reader = reader;
+        states[0] = DOCUMENT_START;
+    }
+
+    /**
+     * Reads the next token.
+     * @return
+     *          the token. {@link Token#END_DOCUMENT} is returned (repeatedly) after the top-level value.
+     * @throws  IOException
+     *          if reading fails, or the document isn't valid JSON.
+     */
+    public Token next() throws IOException {
+        int c = skipWhitespace();
+        switch (states[depth]) {
+            case OBJECT_FIRST:
+                if (c == '}') {
+                    return token = pop(Token.END_OBJECT);
+                }
+                return token = readName(c);
+            case OBJECT_NEXT:
+                if (c == '}') {
+                    return token = pop(Token.END_OBJECT);
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                return token = readName(skipWhitespace());
+            case OBJECT_VALUE:
+                states[depth] = OBJECT_NEXT;
+                return token = readValue(c);
+            case ARRAY_FIRST:
+                if (c == ']') {
+                    return token = pop(Token.END_ARRAY);
+                }
+                states[depth] = ARRAY_NEXT;
+                return token = readValue(c);
+            case ARRAY_NEXT:
+                if (c == ']') {
+                    return token = pop(Token.END_ARRAY);
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                return token = readValue(skipWhitespace());
+            case DOCUMENT_START:
+                states[depth] = DOCUMENT_END;
+                return token = readValue(c);
+            default:
+                if (c != -1) {
+                    throw syntaxError("Unexpected content after the document");
+                }
+                return token = Token.END_DOCUMENT;
+        }
+    }
+
+    /**
+     * Reads the next token, and checks its type.
+     * @param   expected
+     *          the expected token.
+     * @throws  IOException
+     *          if the next token is a different one.
+     */
+    public void expect(Token expected) throws IOException {
+        if (next() != expected) {
+            throw syntaxError("Expected " + expected + ", got " + token);
+        }
+    }
+
+    /**
+     * Skips the value that follows the last {@link Token#NAME} (or the next value of an array), including everything
+     * nested in it.
+     * @throws  IOException
+     *          if reading fails, or the document isn't valid JSON.
+     */
+    public void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            switch (next()) {
+                case BEGIN_OBJECT, BEGIN_ARRAY -> nesting++;
+                case END_OBJECT, END_ARRAY -> nesting--;
+                case END_DOCUMENT -> throw syntaxError("Unexpected end of the document");
+                default -> {
+                }
+            }
+        } while (nesting > 0);
+    }
+
+    /**
+     * @return
+     *          the last token read.
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * @return
+     *          the text of the last {@link Token#NAME}, {@link Token#STRING} or {@link Token#NUMBER}.
+     */
+    public String getString() {
+        return text.toString();
+    }
+
+    /**
+     * @return
+     *          the last {@link Token#NUMBER}, as an <code>int</code>.
+     * @throws  IOException
+     *          if the last token wasn't an integer number.
+     */
+    public int getInt() throws IOException {
+        if (token != Token.NUMBER) {
+            throw syntaxError("Expected a number, got " + token);
+        }
+        try {
+            return Integer.parseInt(text, 0, text.length(), 10);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected an integer, got " + text);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Token readName(int c) throws IOException {
+        if (c != '"') {
+            throw syntaxError("Expected a name");
+        }
+        readString();
+        if (skipWhitespace() != ':') {
+            throw syntaxError("Expected ':'");
+        }
+        states[depth] = OBJECT_VALUE;
+        return Token.NAME;
+    }
+
+    private Token readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(OBJECT_FIRST);
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(ARRAY_FIRST);
+                return Token.BEGIN_ARRAY;
+            case '"':
+                readString();
+                return Token.STRING;
+            case 't':
+                readLiteral("rue");
+                return Token.TRUE;
+            case 'f':
+                readLiteral("alse");
+                return Token.FALSE;
+            case 'n':
+                readLiteral("ull");
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError(c == -1 ? "Unexpected end of the document" : "Expected a value");
+        }
+    }
+
+    /**
+     * Reads the rest of a string (after the opening quote) into {@link #text}.
+     */
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            //copy runs of plain characters straight from the buffer
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\' || c == '\n') {
+                    break;
+                }
+                position++;
+            }
+            text.append(buffer, start, position - start);
+            column += position - start;
+            if (position == limit) {
+                continue;
+            }
+            char c = buffer[position++];
+            column++;
+            if (c == '"') {
+                return;
+            }
+            if (c == '\n') {
+                throw syntaxError("Unterminated string");
+            }
+            text.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Invalid escape");
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char) first);
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append((char) read());
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    private Token pop(Token end) {
+        depth--;
+        return end;
+    }
+
+    private void push(byte state) {
+        if (++depth == states.length) {
+            byte[] grown = new byte[states.length * 2];
+            System.arraycopy(states, 0, grown, 0, states.length);
+            states = grown;
+        }
+        states[depth] = state;
+    }
+
+    /**
+     * @return
+     *          the next character that isn't whitespace (consumed), or <code>-1</code> at the end of input.
+     */
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+            column = 0;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at line " + line + ", column " + column);
+    }
+}
@@ -6,17 +6,25 @@ import com.immunizationcalendar.model.VaccineType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class NewFakeVaccineSource implements IVaccineSourceNew {
 
-    private static NewFakeVaccineSource instance;
+    /**
+     * Holds the only instance. The JVM initializes it lazily and exactly once, on the first
+     * {@link #getInstance()}, and publishes it safely to every thread.
+     */
+    private static final class InstanceHolder {
+        private static final NewFakeVaccineSource INSTANCE = new NewFakeVaccineSource();
+    }
 
-    private List<Disease> diseaseList;
-    private List<VaccineType> vaccineList;
+    private final List<Disease> diseaseList;
+    private final List<VaccineType> vaccineList;
+    private final Map<Disease, VaccineType> defaultVaccines;
 
     private NewFakeVaccineSource() {
 
-        diseaseList = new ArrayList<>();
+        List<Disease> diseaseList = new ArrayList<>();
         Disease test1Of3 = new Disease("1of3", Recommendation.MANDATORY);
         Disease test2Of3 = new Disease("2of3", Recommendation.MANDATORY);
         Disease test3Of3 = new Disease("3of3", Recommendation.MANDATORY);
@@ -24,7 +32,7 @@ public class NewFakeVaccineSource implements IVaccineSourceNew {
         Disease testRecommended = new Disease("disease with recommended vacc", Recommendation.RECOMMENDED);
         Disease testOptional = new Disease("disease with optional vacc", Recommendation.OPTIONAL);
 
-        vaccineList = new ArrayList<>();
+        List<VaccineType> vaccineList = new ArrayList<>();
         VaccineType vaccine1 = new VaccineType.Builder()
                 .withDisease(test1Of3)
                 .create("szczepionka 1 z 3");
@@ -59,21 +67,23 @@ public class NewFakeVaccineSource implements IVaccineSourceNew {
 
         vaccineList.addAll(List.of(vaccine1,vaccine2,vaccine3,vaccineAllInOne,vaccineMandatory,vaccineMandatoryNotDefaultVersion,vaccineRecommended,vaccineOptional));
 
-        test1Of3.setDefaultVaccine(vaccine1);
-        test2Of3.setDefaultVaccine(vaccine2);
-        test3Of3.setDefaultVaccine(vaccine3);
-        testMandatory.setDefaultVaccine(vaccineMandatory);
-        testRecommended.setDefaultVaccine(vaccineRecommended);
-        testOptional.setDefaultVaccine(vaccineOptional);
+        this.defaultVaccines = Map.of(
+                test1Of3, vaccine1,
+                test2Of3, vaccine2,
+                test3Of3, vaccine3,
+                testMandatory, vaccineMandatory,
+                testRecommended, vaccineRecommended,
+                testOptional, vaccineOptional);
 
         diseaseList.addAll(List.of(test1Of3, test2Of3, test3Of3, testMandatory, testRecommended, testOptional));
+
+        this.diseaseList = List.copyOf(diseaseList);
+        this.vaccineList = List.copyOf(vaccineList);
     }
 
 
     public static NewFakeVaccineSource getInstance() {
-        if (instance == null)
-            instance = new NewFakeVaccineSource();
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     @Override
@@ -85,4 +95,9 @@ public class NewFakeVaccineSource implements IVaccineSourceNew {
     public List<Disease> getDiseases() {
         return diseaseList;
     }
+
+    @Override
+    public Map<Disease, VaccineType> getDefaultVaccines() {
+        return defaultVaccines;
+    }
 }
@@ -0,0 +1,404 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.Recommendation;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static com.immunizationcalendar.datasources.CatalogSnapshotCompiler.HEADER_SIZE;
+import static com.immunizationcalendar.datasources.CatalogSnapshotCompiler.MAGIC;
+import static com.immunizationcalendar.datasources.CatalogSnapshotCompiler.NULL_OFFSET;
+import static com.immunizationcalendar.datasources.CatalogSnapshotCompiler.VERSION;
+
+/**
+ * A source of vaccination data read from a binary snapshot (see {@link CatalogSnapshotCompiler}).
+ *
+ * <p>Opening a snapshot only memory-maps the file and checks its header and the position of every section, in constant
+ * time. The checksum and the individual records are checked by {@link #verify()}, which should be called before
+ * using a file that may be truncated or corrupted (e.g. one written by another process); decoding such a file without
+ * it may fail with an unchecked exception. The model is built lazily:
+ * strings are decoded from the mapped file when an object needs them, diseases when they're first requested, and
+ * vaccines one by one as the list returned by {@link #getVaccines()} is accessed. Vaccines are always decoded in
+ * catalog order, so their IDs (see {@link VaccineType#getId()}) stay dense and ordered.</p>
+ *
+ * <p>Decoding is synchronized, so a source can be shared between threads.</p>
+ */
+public class SnapshotVaccineSource implements IVaccineSourceNew {
+
+    private static final VaccTag[] TAGS = VaccTag.values();
+    private static final Recommendation[] RECOMMENDATIONS = Recommendation.values();
+
+    /**
+     * Upper bound for the number of doses of a vaccine. The planners pack dose numbers into 16 bits.
+     */
+    private static final int MAX_DOSES = 0xFFFF;
+
+    private final Path path;
+
+    /**
+     * The payload of the snapshot (without the header), read with absolute positions only.
+     */
+    private final ByteBuffer payload;
+
+    /**
+     * CRC32 of the {@link #payload}, from the header.
+     */
+    private final int checksum;
+
+    private final int stringCount;
+    private final int stringOffsetsStart;
+    private final int stringBytesStart;
+
+    private final int diseaseCount;
+    private final int diseasesStart;
+
+    private final int vaccineCount;
+    private final int maskWords;
+    private final int vaccineOffsetsStart;
+
+    /**
+     * <code>true</code> once {@link #verify()} succeeded.
+     */
+    private boolean verified;
+
+    private Disease[] diseases;
+    private Map<Disease, VaccineType> defaultVaccines;
+    private final VaccineType[] vaccines;
+    private int decodedVaccines;
+
+    private final List<VaccineType> vaccineList = new AbstractList<>() {
+        @Override
+        public VaccineType get(int index) {
+            return vaccine(index);
+        }
+
+        @Override
+        public int size() {
+            return vaccineCount;
+        }
+    };
+
+    /**
+     * Opens a snapshot, in constant time.
+     * @param   path
+     *          the snapshot file.
+     * @throws  IOException
+     *          if the file can't be read, has an unsupported version, or its sections don't fit in the file.
+     */
+    public SnapshotVaccineSource(Path path) throws IOException {
+        this.path = path;
+        ByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.limit() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot: " + path);
+        }
+        if (file.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + file.getInt(4) + ": " + path);
+        }
+        int length = file.getInt(8);
+        if (length < 0 || length != file.limit() - HEADER_SIZE) {
+            throw new IOException("Truncated catalog snapshot: " + path);
+        }
+        this.payload = file.slice(HEADER_SIZE, length);
+        this.checksum = file.getInt(12);
+
+        //only the sections are located here; their content is checked by verify()
+        this.stringCount = count(0, Integer.BYTES, "string count");
+        this.stringOffsetsStart = Integer.BYTES;
+        this.stringBytesStart = section(stringOffsetsStart, stringCount + 1L, Integer.BYTES, "string offsets");
+        int stringBytes = payload.getInt(stringOffsetsStart + stringCount * Integer.BYTES);
+        this.diseasesStart = section(stringBytesStart, stringBytes, 1, "strings") + Integer.BYTES;
+        check(diseasesStart <= payload.limit(), "disease count");
+        this.diseaseCount = count(diseasesStart - Integer.BYTES, 3 * Integer.BYTES, "disease count");
+        int vaccinesStart = section(diseasesStart, diseaseCount, 3 * Integer.BYTES, "diseases");
+        this.vaccineCount = count(vaccinesStart, Integer.BYTES, "vaccine count");
+        check(vaccinesStart + 2 * Integer.BYTES <= payload.limit(), "mask words");
+        this.maskWords = payload.getInt(vaccinesStart + Integer.BYTES);
+        check(maskWords == (diseaseCount + Long.SIZE - 1) / Long.SIZE, "mask words");
+        this.vaccineOffsetsStart = vaccinesStart + 2 * Integer.BYTES;
+        section(vaccineOffsetsStart, vaccineCount, Integer.BYTES, "vaccine offsets");
+        this.vaccines = new VaccineType[vaccineCount];
+    }
+
+    /**
+     * Checks the whole snapshot, in linear time: the checksum of the payload, and then every string, disease and
+     * vaccine record, so that decoding can't fail later. A matching checksum alone doesn't guarantee a consistent
+     * layout (e.g. after a compiler bug). Only the first successful call does any work.
+     * @throws  IOException
+     *          if the checksum doesn't match, or a record is malformed.
+     */
+    public synchronized void verify() throws IOException {
+        if (verified) {
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Corrupted catalog snapshot (checksum mismatch): " + path);
+        }
+
+        int previous = 0;
+        for (int i = 0; i <= stringCount; i++) {
+            int offset = payload.getInt(stringOffsetsStart + i * Integer.BYTES);
+            check((i > 0 || offset == 0) && offset >= previous, "string offsets");
+            previous = offset;
+        }
+        for (int i = 0; i < diseaseCount; i++) {
+            int position = diseasesStart + i * 3 * Integer.BYTES;
+            checkString(payload.getInt(position), "disease name");
+            int recommendation = payload.getInt(position + Integer.BYTES);
+            check(recommendation >= 0 && recommendation < RECOMMENDATIONS.length, "disease recommendation");
+            int defaultVaccine = payload.getInt(position + 2 * Integer.BYTES);
+            check(defaultVaccine >= -1 && defaultVaccine < vaccineCount, "default vaccine");
+        }
+        int recordsStart = vaccineOffsetsStart + vaccineCount * Integer.BYTES;
+        for (int i = 0; i < vaccineCount; i++) {
+            int position = payload.getInt(vaccineOffsetsStart + i * Integer.BYTES);
+            check(position >= recordsStart && position < payload.limit(), "vaccine offsets");
+            checkVaccine(position);
+        }
+        verified = true;
+    }
+
+    /**
+     * Checks a single vaccine record (see {@link #decodeVaccine(int, Disease[])}).
+     */
+    private void checkVaccine(int position) throws IOException {
+        position = section(position, 1, Integer.BYTES, "vaccine record");
+        checkString(payload.getInt(position - Integer.BYTES), "vaccine name");
+        int masksStart = position;
+        position = section(position, maskWords, Long.BYTES, "vaccine record");
+        for (int word = 0; word < maskWords; word++) {
+            long mask = payload.getLong(masksStart + word * Long.BYTES);
+            int bits = Math.min(Long.SIZE, diseaseCount - word * Long.SIZE);
+            check(bits == Long.SIZE || mask >>> bits == 0, "vaccine diseases");
+        }
+        position = section(position, 3, Integer.BYTES, "vaccine record");
+        check(payload.getInt(position - 3 * Integer.BYTES) >>> TAGS.length == 0, "vaccine tags");
+        checkString(payload.getInt(position - 2 * Integer.BYTES), "vaccine description");
+        int altNameCount = count(position - Integer.BYTES, Integer.BYTES, "alt names");
+        int altNamesStart = position;
+        //alt names, followed by doses, maxAge and the min offset count
+        position = section(position, altNameCount + 3L, Integer.BYTES, "vaccine record");
+        for (int i = 0; i < altNameCount; i++) {
+            checkString(payload.getInt(altNamesStart + i * Integer.BYTES), "alt names");
+        }
+        int doses = payload.getInt(altNamesStart + altNameCount * Integer.BYTES);
+        check(doses >= 0 && doses <= MAX_DOSES, "number of doses");
+        check(altNameCount == 0 || altNameCount == doses, "alt names");
+        int minOffsetCount = count(position - Integer.BYTES, 2 * Integer.BYTES, "min offsets");
+        position = section(position, minOffsetCount, 2 * Integer.BYTES, "min offsets");
+        position = section(position, 1, Integer.BYTES, "vaccine record");
+        int recommendedCount = count(position - Integer.BYTES, 2 * Integer.BYTES, "recommended offsets");
+        for (int i = 0; i < recommendedCount; i++) {
+            position = section(position, 2, Integer.BYTES, "recommended offsets");
+            int length = count(position - Integer.BYTES, Integer.BYTES, "recommended offsets");
+            position = section(position, length, Integer.BYTES, "recommended offsets");
+        }
+    }
+
+    /**
+     * Reads a count at the given position, checking that as many items of the given size could still fit in the
+     * payload.
+     */
+    private int count(int position, int itemSize, String what) throws IOException {
+        check(position >= 0 && position + Integer.BYTES <= payload.limit(), what);
+        int count = payload.getInt(position);
+        check(count >= 0 && (long) count * itemSize <= payload.limit(), what);
+        return count;
+    }
+
+    /**
+     * Checks that a section of <code>count</code> items of the given size fits in the payload.
+     * @return
+     *          the position right after the section.
+     */
+    private int section(int start, long count, int itemSize, String what) throws IOException {
+        long end = start + count * itemSize;
+        check(count >= 0 && start >= 0 && end <= payload.limit(), what);
+        return (int) end;
+    }
+
+    private void checkString(int index, String what) throws IOException {
+        check(index >= -1 && index < stringCount, what);
+    }
+
+    private void check(boolean condition, String what) throws IOException {
+        if (!condition) {
+            throw new IOException("Malformed catalog snapshot (" + what + "): " + path);
+        }
+    }
+
+    @Override
+    public List<VaccineType> getVaccines() {
+        return vaccineList;
+    }
+
+    @Override
+    public synchronized List<Disease> getDiseases() {
+        return Collections.unmodifiableList(Arrays.asList(diseases()));
+    }
+
+    /**
+     * Decodes the default vaccines on first use, which decodes every vaccine up to the last default one.
+     */
+    @Override
+    public synchronized Map<Disease, VaccineType> getDefaultVaccines() {
+        if (defaultVaccines == null) {
+            Disease[] allDiseases = diseases();
+            Map<Disease, VaccineType> result = new HashMap<>(diseaseCount * 2);
+            for (int i = 0; i < diseaseCount; i++) {
+                int defaultVaccine = payload.getInt(diseasesStart + (i * 3 + 2) * Integer.BYTES);
+                if (defaultVaccine >= 0) {
+                    result.put(allDiseases[i], vaccine(defaultVaccine));
+                }
+            }
+            defaultVaccines = Collections.unmodifiableMap(result);
+        }
+        return defaultVaccines;
+    }
+
+    /**
+     * @return
+     *          the snapshot file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return
+     *          the number of vaccines decoded so far.
+     */
+    public synchronized int getDecodedVaccines() {
+        return decodedVaccines;
+    }
+
+    /**
+     * Decodes the diseases on first use.
+     */
+    private synchronized Disease[] diseases() {
+        if (diseases == null) {
+            diseases = new Disease[diseaseCount];
+            for (int i = 0; i < diseaseCount; i++) {
+                int position = diseasesStart + i * 3 * Integer.BYTES;
+                diseases[i] = new Disease(string(payload.getInt(position)),
+                        RECOMMENDATIONS[payload.getInt(position + Integer.BYTES)]);
+            }
+        }
+        return diseases;
+    }
+
+    private synchronized VaccineType vaccine(int index) {
+        if (index < 0 || index >= vaccineCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + vaccineCount);
+        }
+        if (index >= decodedVaccines) {
+            Disease[] allDiseases = diseases();
+            while (decodedVaccines <= index) {
+                vaccines[decodedVaccines] = decodeVaccine(decodedVaccines, allDiseases);
+                decodedVaccines++;
+            }
+        }
+        return vaccines[index];
+    }
+
+    private VaccineType decodeVaccine(int index, Disease[] allDiseases) {
+        int position = payload.getInt(vaccineOffsetsStart + index * Integer.BYTES);
+        String name = string(payload.getInt(position));
+        position += Integer.BYTES;
+
+        List<Disease> vaccineDiseases = new ArrayList<>();
+        for (int word = 0; word < maskWords; word++) {
+            for (long mask = payload.getLong(position); mask != 0; mask &= mask - 1) {
+                vaccineDiseases.add(allDiseases[word * Long.SIZE + Long.numberOfTrailingZeros(mask)]);
+            }
+            position += Long.BYTES;
+        }
+
+        VaccineType.Builder builder = new VaccineType.Builder().withDisease(vaccineDiseases);
+        int tags = payload.getInt(position);
+        for (int rest = tags; rest != 0; rest &= rest - 1) {
+            builder.withTags(TAGS[Integer.numberOfTrailingZeros(rest)]);
+        }
+        builder.withDescription(string(payload.getInt(position + Integer.BYTES)));
+        position += 2 * Integer.BYTES;
+
+        int altNameCount = payload.getInt(position);
+        position += Integer.BYTES;
+        if (altNameCount > 0) {
+            String[] altNames = new String[altNameCount];
+            for (int i = 0; i < altNameCount; i++, position += Integer.BYTES) {
+                altNames[i] = string(payload.getInt(position));
+            }
+            builder.withAltNames(altNames);
+        }
+
+        int doses = payload.getInt(position);
+        int maxAge = payload.getInt(position + Integer.BYTES);
+        position += 2 * Integer.BYTES;
+
+        int minOffsetCount = payload.getInt(position);
+        position += Integer.BYTES;
+        HashMap<Integer, Integer> minOffsets = new HashMap<>();
+        for (int i = 0; i < minOffsetCount; i++, position += 2 * Integer.BYTES) {
+            minOffsets.put(payload.getInt(position), payload.getInt(position + Integer.BYTES));
+        }
+
+        int recommendedCount = payload.getInt(position);
+        position += Integer.BYTES;
+        HashMap<Integer, Integer[]> recommendedOffsets = new HashMap<>();
+        for (int i = 0; i < recommendedCount; i++) {
+            int dose = payload.getInt(position);
+            Integer[] range = new Integer[payload.getInt(position + Integer.BYTES)];
+            position += 2 * Integer.BYTES;
+            for (int j = 0; j < range.length; j++, position += Integer.BYTES) {
+                int offset = payload.getInt(position);
+                range[j] = offset == NULL_OFFSET ? null : offset;
+            }
+            recommendedOffsets.put(dose, range);
+        }
+
+        return builder.withVaccineSceheme(new VaccineScheme(doses, minOffsets, recommendedOffsets, maxAge))
+                .create(name);
+    }
+
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int start = payload.getInt(stringOffsetsStart + index * Integer.BYTES);
+        int end = payload.getInt(stringOffsetsStart + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        payload.get(stringBytesStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotVaccineSource{" +
+                "path=" + path +
+                ", strings=" + stringCount +
+                ", diseases=" + diseaseCount +
+                ", vaccines=" + vaccineCount +
+                '}';
+    }
+}
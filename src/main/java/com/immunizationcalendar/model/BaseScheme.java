@@ -1,7 +1,9 @@
 package com.immunizationcalendar.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents basic information about a "scheme" or "plan" of vaccinations. Examples are: the free, government-funded
@@ -11,11 +13,13 @@ import java.util.List;
  * to the radio selector in Section 1 of the input form.</p>
  * <p>However, the choice of VaccinationScheme decides the kind of vaccination data returned by the
  * {@link DataProvider}.</p>
+ * <p>BaseSchemes are immutable, and shared by every user session; which one the user checked is tracked by a
+ * {@link com.immunizationcalendar.VaccineSelector}.</p>
  */
 public class BaseScheme {
-    static private int idCounter = 0;
-    private List<VaccineType> vaccinesList;
-    private List<Disease> diseaseList;
+    static private final AtomicInteger idCounter = new AtomicInteger();
+    private final List<VaccineType> vaccinesList;
+    private final List<Disease> diseaseList;
     /**
      * The display name of this Scheme.
      */
@@ -25,42 +29,30 @@ public class BaseScheme {
      */
     private final int id;
 
-    // TODO: This might actually not be necessary, since we're calling the setChosenScheme() method in the Client
-    //  anyway in order to handle the selection... I only implemented this because that's the way I handled similar
-    //  inputs earlier, but in this case it's probably just dead code.
     /**
-     * <strong>Bidirectionally bound to an HTML radio selector.</strong> Indicates whether this scheme is currently
-     * selected by the user.
-     */
-    private boolean checked;
-
-    // TODO: Apply some abstraction to the construction process, to make sure that the "id" and "checked" fields have
-    //  proper values.
-    /**
-     * Constructs a Scheme. No two Schemes should be simultaneously "checked", but for now the constructor doesn't
-     * check it in any way, nor does it check that the IDs are unique as they should.
+     * Constructs a Scheme, with a unique ID.
      * <p>The list of available VaccinationSchemes is built by the {@link DataProvider}.</p>
      * @param   name
      *          a display name.
-     * @param   id
-     *          a unique ID, zero-indexed.
-     * @param   checked
-     *          whether this Scheme starts as the default.
+     * @param   vaccinesList
+     *          the vaccines of this Scheme. The list is copied.
+     * @param   diseaseList
+     *          the diseases covered by this Scheme. The list is copied.
      */
-    public BaseScheme(String name) {
+    public BaseScheme(String name, List<VaccineType> vaccinesList, List<Disease> diseaseList) {
         this.name = name;
-        this.id = idCounter++;
-        this.checked = false;
-        this.vaccinesList = new ArrayList<>();
-        this.diseaseList = new ArrayList<>();
-    }
-
-    public void addVaccine(VaccineType vaccineType){
-        this.vaccinesList.add(vaccineType);
+        this.id = idCounter.getAndIncrement();
+        this.vaccinesList = Collections.unmodifiableList(new ArrayList<>(vaccinesList));
+        this.diseaseList = Collections.unmodifiableList(new ArrayList<>(diseaseList));
     }
 
-    public void addDisease(Disease disease){
-        this.diseaseList.add(disease);
+    /**
+     * Constructs an empty Scheme, with a unique ID.
+     * @param   name
+     *          a display name.
+     */
+    public BaseScheme(String name) {
+        this(name, List.of(), List.of());
     }
     public String getName() {
         return name;
@@ -70,31 +62,11 @@ public class BaseScheme {
         return id;
     }
 
-    /**
-     * <strong>Bidirectionally bound to an HTML radio selector.</strong> Invoked when the user switches to this Scheme.
-     * @param   checked
-     *          current selection status of this Scheme, based on user input.
-     */
-    public void setChecked(boolean checked) {
-        this.checked = checked;
-    }
-
-    /**
-     * <strong>Bidirectionally bound to an HTML radio selector.</strong> Indicates whether this Scheme should be
-     * displayed as selected.
-     * @return
-     *          <code>true</code> if this Scheme is currently selected, <code>false</code> otherwise.
-     */
-    public boolean isChecked() {
-        return checked;
-    }
-
     @Override
     public String toString() {
         return "BaseScheme{" +
                 "name='" + name + '\'' +
                 ", id=" + id +
-                ", checked=" + checked +
                 '}';
     }
 
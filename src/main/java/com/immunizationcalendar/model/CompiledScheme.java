@@ -0,0 +1,121 @@
+package com.immunizationcalendar.model;
+
+/**
+ * Immutable, array-backed form of a {@link VaccineScheme}, used on the hot paths of schedule generation and
+ * validation: every lookup is a plain array access, without boxing or hashing.
+ *
+ * <p>Dose numbers start from 1, as in VaccineScheme. Missing values are filled in the same way everywhere: a missing
+ * minimum offset is 0, a missing recommended range is just the minimum offset.</p>
+ */
+public final class CompiledScheme {
+
+    /**
+     * Minimum offset of every dose (dose <i>n</i> at index <i>n - 1</i>).
+     */
+    private final int[] minOffsets;
+
+    /**
+     * Offset used when scheduling every dose: the lower bound of the recommended range, but never less than the
+     * minimum offset.
+     */
+    private final int[] offsets;
+
+    /**
+     * Upper bound of the recommended range of every dose, but never less than its {@link #offsets}.
+     */
+    private final int[] maxOffsets;
+
+    private final int maxAge;
+
+    /**
+     * Number of the last dose with a positive minimum offset, 0 if there's none.
+     */
+    private final int lastConstrainedDose;
+
+    CompiledScheme(VaccineScheme scheme) {
+        int numberOfDoses = scheme.getNumberOfDoses();
+        this.minOffsets = new int[numberOfDoses];
+        this.offsets = new int[numberOfDoses];
+        this.maxOffsets = new int[numberOfDoses];
+        this.maxAge = scheme.getMaxAge();
+
+        int lastConstrained = 0;
+        for (int dose = 1; dose <= numberOfDoses; dose++) {
+            Integer minOffset = scheme.getMinOffsets().get(dose);
+            Integer[] recommended = scheme.getRecommendedOffsets().get(dose);
+            int min = minOffset == null ? 0 : minOffset;
+            int offset = min;
+            int maxOffset = min;
+            if (recommended != null && recommended.length > 0 && recommended[0] != null) {
+                offset = Math.max(min, recommended[0]);
+                maxOffset = offset;
+                if (recommended.length > 1 && recommended[1] != null) {
+                    maxOffset = Math.max(offset, recommended[1]);
+                }
+            }
+            minOffsets[dose - 1] = min;
+            offsets[dose - 1] = offset;
+            maxOffsets[dose - 1] = maxOffset;
+            if (min > 0) {
+                lastConstrained = dose;
+            }
+        }
+        this.lastConstrainedDose = lastConstrained;
+    }
+
+    public int getNumberOfDoses() {
+        return minOffsets.length;
+    }
+
+    /**
+     * @param   dose
+     *          number of dose (starting from 1).
+     * @return
+     *          the minimum offset from the previous dose, or 0 for doses beyond {@link #getNumberOfDoses()}.
+     */
+    public int getMinOffset(int dose) {
+        return dose <= minOffsets.length ? minOffsets[dose - 1] : 0;
+    }
+
+    /**
+     * @param   dose
+     *          number of dose (starting from 1).
+     * @return
+     *          the offset from the previous dose used when scheduling it: the lower bound of the recommended range,
+     *          but never less than the minimum offset.
+     */
+    public int getOffset(int dose) {
+        return offsets[dose - 1];
+    }
+
+    /**
+     * @param   dose
+     *          number of dose (starting from 1).
+     * @return
+     *          the largest recommended offset from the previous dose, never less than {@link #getOffset(int)}.
+     */
+    public int getMaxOffset(int dose) {
+        return maxOffsets[dose - 1];
+    }
+
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @return
+     *          <code>true</code> if the scheme has a finite <code>maxAge</code>.
+     */
+    public boolean isAgeLimited() {
+        return maxAge != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return
+     *          the number of the last dose with a positive minimum offset, 0 if there's none. Doses after it can be
+     *          given at any time after the previous one.
+     */
+    public int getLastConstrainedDose() {
+        return lastConstrainedDose;
+    }
+}
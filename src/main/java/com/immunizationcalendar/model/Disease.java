@@ -1,40 +1,34 @@
 package com.immunizationcalendar.model;
 
 
+/**
+ * A disease that vaccines protect against. Diseases are immutable, so they can be shared by every user session;
+ * whether the user chose them is tracked by a {@link com.immunizationcalendar.VaccineSelector}, and their default
+ * vaccines by the catalog's {@link com.immunizationcalendar.VaccineRegistry}.
+ */
 public class Disease {
 
-    private String name;
-    private Recommendation recommendation;
-    private VaccineType defaultVaccine;
-    private boolean checked;
+    private final String name;
+    private final Recommendation recommendation;
 
     public Disease(String name, Recommendation recommendation) {
         this.name = name;
         this.recommendation = recommendation;
-        this.checked = false;
     }
 
-    public void setDefaultVaccine(VaccineType defaultVaccine) {
-        this.defaultVaccine = defaultVaccine;
+    public String getName() {
+        return name;
     }
 
     public Recommendation getRecommendation() {
         return recommendation;
     }
 
-    public VaccineType getDefaultVaccine() {
-        return defaultVaccine;
-    }
-
-    public void setChecked(boolean checked){
-        this.checked = checked;
-    }
-
     @Override
     public String toString() {
         return "Disease{" +
                 "name='" + name + '\'' +
-                ", checked=" + checked +
+                ", recommendation=" + recommendation +
                 '}';
     }
 }
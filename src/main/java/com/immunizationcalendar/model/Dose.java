@@ -78,7 +78,7 @@ public class Dose {
      *          the date scheduled for this dose, as a YYYY-MM-DD <code>String</code>.
      */
     public Dose(VaccineType type, String date) {
-        this(type, new TinyDate(date));
+        this(type, TinyDate.of(date));
     }
 
     public VaccineType getType() {
@@ -2,18 +2,20 @@ package com.immunizationcalendar.model;
 
 
 
-import com.immunizationcalendar.Form;
 import com.immunizationcalendar.utils.RecommendationTableBox;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A <strong>VaccineType</strong> represents all the data associated with a single type of vaccination, such as the name
  * of the product, its numeric identifier, number of doses and the recommended delay between doses.
- * <p>VaccineType objects also track whether the user chose to add the given vaccination to their calendar.</p>
+ * <p>VaccineType objects are immutable, so a single catalog can be shared by every thread and user session. Whether
+ * the user chose to add the given vaccination to their calendar is tracked per session, by a
+ * {@link com.immunizationcalendar.VaccineSelector}.</p>
  */
 public class VaccineType {
 
@@ -35,13 +37,13 @@ public class VaccineType {
      * List of all schemes available for this concrete vaccination. User should have opportunity to add a new scheme and change default one.
      * Default scheme should depend on age of kid.
      */
-    private List<VaccineScheme> vaccineSchemesList;
+    private final List<VaccineScheme> vaccineSchemesList;
 
     /**
      * chosen scheme for this vaccination
      */
 
-    private VaccineScheme vaccineScheme;
+    private final VaccineScheme vaccineScheme;
     // idea of dateOffsets moved to VaccineScheme class.
 //    /**
 //     * Recommended dates of administering individual doses, represented as <emphasis>offsets in days</emphasis> from the
@@ -59,32 +61,15 @@ public class VaccineType {
      * Column setup for Section 4 of the HTML (recommended schedule).
      */
     private final List<RecommendationTableBox> displayBoxes;
-    /**
-     * Functions that run whenever this VaccineType is selected/deselected.
-     */
-    //private final Map<VaccineType[], Consumer<VaccineType[]>> vaccineSelectionHandlers;
-    private final List<Runnable> vaccineSelectionHandlers;
-    // TODO: Note, that the current setup won't work with "live" updating of input. If we need that,
-    //  formDataHandlers need to run every time the form gets modified in some way.
-    /**
-     * Functions that run once when the form is submitted.
-     */
-    private final List<Consumer<Form>> formDataHandlers;
-
-    /**
-     * Is this vaccination selected by the user. <strong>This value is bound bidirectionally with an HTML element
-     * </strong>.
-     */
-    private boolean selected;
     /**
      * hold info about route of administration and if a vaccine is live
      */
-    private List<VaccTag> tags;
+    private final List<VaccTag> tags;
 
     /**
      * description of vaccination for user info
      */
-    private String description;
+    private final String description;
     // TODO: Should probably include the recommended RANGE of dates: minimum/maximum??/optimal
 
     // TODO: Should include a description/tooltip for the end user
@@ -96,16 +81,13 @@ public class VaccineType {
      */
     private VaccineType(Builder builder) {
         this.name = builder.name;
-        this.disease = builder.disease;
+        this.disease = List.copyOf(builder.disease);
         this.id = builder.id;
-        this.vaccineSchemesList = builder.vaccineSchemesList;
+        this.vaccineSchemesList = List.copyOf(builder.vaccineSchemesList);
         this.vaccineScheme = builder.vaccineScheme;
-        this.altNames = builder.altNames;
-        this.displayBoxes = builder.displayBoxes;
-        this.vaccineSelectionHandlers = builder.vaccineSelectionHandlers;
-        this.formDataHandlers = builder.formDataHandlers;
-        this.selected = builder.selected;
-        this.tags = builder.tags;
+        this.altNames = builder.altNames == null ? null : builder.altNames.clone();
+        this.displayBoxes = List.copyOf(builder.displayBoxes);
+        this.tags = List.copyOf(builder.tags);
         this.description = builder.description;
     }
 
@@ -113,7 +95,7 @@ public class VaccineType {
      * Handles the construction of {@link VaccineType} instances.
      */
     public static class Builder {
-        private static int currentID = 0;
+        private static final AtomicInteger currentID = new AtomicInteger();
         private String name;
         private List<Disease> disease;
         private int id;
@@ -121,10 +103,6 @@ public class VaccineType {
         private VaccineScheme vaccineScheme;
         private String[] altNames;
         private List<RecommendationTableBox> displayBoxes;
-        //        private Map<VaccineType[], Consumer<VaccineType[]>> vaccineSelectionHandlers;
-        private List<Runnable> vaccineSelectionHandlers;
-        private List<Consumer<Form>> formDataHandlers;
-        private boolean selected;
         private List<VaccTag> tags = new ArrayList<>();
         private String description;
 
@@ -201,51 +179,27 @@ public class VaccineType {
         }
 
         /**
-         * Creates an instance of {@link VaccineType}. The ID is automatically incremented with each invocation. The
-         * only nullable field is (by design) {@link #altNames}.
+         * Creates an instance of {@link VaccineType}. The ID is automatically incremented with each invocation (also
+         * when several threads build catalogs at once). The only nullable field is (by design) {@link #altNames}.
          * @param   name
          *          the name of this VaccineType.
-         * @param   selected
-         *          whether this VaccineType should be selected by default.
          * @return
          *          a properly initialized VaccineType object.
          */
         public VaccineType create(String name) {
             this.name = name;
             if (this.disease == null) this.disease = new ArrayList<>();
-            this.id = currentID++;
+            this.id = currentID.getAndIncrement();
 //            if (this.dateOffsets == null) this.dateOffsets = new int[]{0};
             if (this.vaccineSchemesList == null) this.vaccineSchemesList = new ArrayList<>();
             if (this.vaccineScheme == null) this.vaccineScheme = new VaccineScheme();
             if (this.displayBoxes == null) this.displayBoxes = new ArrayList<>();
-            this.vaccineSelectionHandlers = new ArrayList<>();
-            this.formDataHandlers = new ArrayList<>();
-            this.selected = false;
             if(this.tags == null) this.tags = new ArrayList<>();
             if (this.description == null) this.description = "";
             return new VaccineType(this);
         }
     }
 
-    /**
-     * Registers a function that will be executed whenever this VaccineType becomes selected/deselected. Does NOT
-     * execute during instantiation - only when the selection changes from initial.
-     * @param   handler
-     *          a function for handling selection/deselection.
-     */
-    public void addSelectionHandler(Runnable handler) {
-        vaccineSelectionHandlers.add(handler);
-    }
-    /**
-     * Registers a function that will be executed once for this VaccineType when the input {@link Form} becomes
-     * submitted.
-     * @param   handler
-     *          a function for handling Form submission.
-     */
-    public void addFormDataHandler(Consumer<Form> handler) {
-        formDataHandlers.add(handler);
-    }
-
     public String getName() {
         return name;
     }
@@ -280,12 +234,12 @@ public class VaccineType {
     }
 
     /**
-     * <strong>Bidirectionally bound to an HTML input check selector.</strong>
      * @return
-     *          <code>true</code> if this VaccineType is currently selected by the user.
+     *          a read-only list of the alt (variant) names of the doses, empty if there are none.
      */
-    public boolean isSelected() {
-        return selected;
+    public List<String> getAltNames() {
+        if (altNames == null) return List.of();
+        return Collections.unmodifiableList(Arrays.asList(altNames));
     }
 
     public List<VaccineScheme> getVaccineSchemesList() {
@@ -304,35 +258,10 @@ public class VaccineType {
         return description;
     }
 
-    /**
-     * <strong>Bidirectionally bound to an HTML input check selector.</strong>
-     * @param   selected
-     *          new status for this VaccineType, directly from user input.
-     */
-    public void setSelected(boolean selected) {
-        this.selected = selected;
-        applySelectionHandlers();
-    }
-
     public List<RecommendationTableBox> getBoxes() {
         return displayBoxes;
     }
 
-    /**
-     * Invokes every function registered as {@link #formDataHandlers} for this VaccineType.
-     * @param   form
-     *          the current input {@link Form}.
-     */
-    public void applyFormDataHandlers(Form form) {
-        formDataHandlers.forEach(h -> h.accept(form));
-    }
-
-    /**
-     * Invokes every function registered as {@link #vaccineSelectionHandlers} for this VaccineType.
-     */
-    private void applySelectionHandlers() {
-        vaccineSelectionHandlers.forEach(Runnable::run);
-    }
     public boolean hasTag(VaccTag tag){
         return tags.contains(tag);
     }
@@ -356,7 +285,7 @@ public class VaccineType {
     public String toString() {
         return "VaccineType{" +
                 "name='" + name + '\'' +
-                ", selected=" + selected +
+                ", id=" + id +
                 '}';
     }
 }
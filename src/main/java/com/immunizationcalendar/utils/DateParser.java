@@ -0,0 +1,202 @@
+package com.immunizationcalendar.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This is a "static" utility class which parses YYYY-MM-DD dates straight from their source (a
+ * <code>CharSequence</code>, a <code>char[]</code>, a <code>byte[]</code> or a <code>ByteBuffer</code>), without
+ * creating any intermediate objects.
+ *
+ * <p>Every <code>parse</code> method returns an <code>int</code>. A successfully parsed date is returned in the same
+ * numeric form as {@link TinyDate#asNumber()} (<strong>YYYYMMDD</strong>), which is always positive. A malformed date
+ * is returned as a negative code, which encodes the index (in the source) of the first offending character - use
+ * {@link #isValid(int)} and {@link #errorPosition(int)} to tell them apart. This way, even rejecting bad input
+ * doesn't allocate.</p>
+ */
+public final class DateParser {
+
+    /**
+     * Length of a YYYY-MM-DD date.
+     */
+    public static final int LENGTH = 10;
+
+    private DateParser() {
+    }
+
+    /**
+     * Parses a <code>CharSequence</code> which should consist of exactly one YYYY-MM-DD date.
+     * @param   text
+     *          the text to parse.
+     * @return
+     *          the date as YYYYMMDD, or a negative error code.
+     */
+    public static int parse(CharSequence text) {
+        int result = parse(text, 0);
+        if (isValid(result) && text.length() != LENGTH) {
+            return error(LENGTH);
+        }
+        return result;
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date starting at the given index of a <code>CharSequence</code>. Any characters after the
+     * date are ignored.
+     * @param   text
+     *          the text to parse.
+     * @param   offset
+     *          index of the first character of the date.
+     * @return
+     *          the date as YYYYMMDD, or a negative error code.
+     */
+    public static int parse(CharSequence text, int offset) {
+        int end = Math.min(text.length(), offset + LENGTH);
+        int packed = 0;
+        for (int i = offset; i < end; i++) {
+            packed = accept(packed, i - offset, text.charAt(i));
+            if (packed < 0) {
+                return error(i);
+            }
+        }
+        return finish(packed, offset, end);
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date starting at the given index of a <code>char[]</code>.
+     * @param   chars
+     *          the characters to parse.
+     * @param   offset
+     *          index of the first character of the date.
+     * @return
+     *          the date as YYYYMMDD, or a negative error code.
+     */
+    public static int parse(char[] chars, int offset) {
+        int end = Math.min(chars.length, offset + LENGTH);
+        int packed = 0;
+        for (int i = offset; i < end; i++) {
+            packed = accept(packed, i - offset, chars[i]);
+            if (packed < 0) {
+                return error(i);
+            }
+        }
+        return finish(packed, offset, end);
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date starting at the given index of a <code>byte[]</code> holding ASCII (or UTF-8) text.
+     * @param   bytes
+     *          the bytes to parse.
+     * @param   offset
+     *          index of the first byte of the date.
+     * @return
+     *          the date as YYYYMMDD, or a negative error code.
+     */
+    public static int parse(byte[] bytes, int offset) {
+        int end = Math.min(bytes.length, offset + LENGTH);
+        int packed = 0;
+        for (int i = offset; i < end; i++) {
+            packed = accept(packed, i - offset, bytes[i]);
+            if (packed < 0) {
+                return error(i);
+            }
+        }
+        return finish(packed, offset, end);
+    }
+
+    /**
+     * Parses a YYYY-MM-DD date starting at the given (absolute) index of a <code>ByteBuffer</code> holding ASCII (or
+     * UTF-8) text. The position of the buffer is <strong>not</strong> changed.
+     * @param   buffer
+     *          the buffer to parse.
+     * @param   offset
+     *          absolute index of the first byte of the date.
+     * @return
+     *          the date as YYYYMMDD, or a negative error code.
+     */
+    public static int parse(ByteBuffer buffer, int offset) {
+        int end = Math.min(buffer.limit(), offset + LENGTH);
+        int packed = 0;
+        for (int i = offset; i < end; i++) {
+            packed = accept(packed, i - offset, buffer.get(i));
+            if (packed < 0) {
+                return error(i);
+            }
+        }
+        return finish(packed, offset, end);
+    }
+
+    /**
+     * Checks whether a value returned by one of the <code>parse</code> methods is a date or an error code.
+     * @param   result
+     *          the value returned by <code>parse</code>.
+     * @return
+     *          <code>true</code> if the value is a YYYYMMDD date.
+     */
+    public static boolean isValid(int result) {
+        return result >= 0;
+    }
+
+    /**
+     * Decodes an error code returned by one of the <code>parse</code> methods.
+     * @param   result
+     *          a negative value returned by <code>parse</code>.
+     * @return
+     *          index (in the parsed source) of the first character that isn't part of a valid date.
+     */
+    public static int errorPosition(int result) {
+        return -result - 1;
+    }
+
+    /**
+     * Consumes a single character of the date. The digits of YYYY-MM-DD, read left to right, are exactly the digits
+     * of YYYYMMDD, so the numeric value is simply accumulated as we go.
+     * @param   packed
+     *          the value accumulated so far.
+     * @param   index
+     *          index of the character within the date (0-9).
+     * @param   c
+     *          the character.
+     * @return
+     *          the new accumulated value, or -1 if the character doesn't belong at this index.
+     */
+    private static int accept(int packed, int index, int c) {
+        if (index == 4 || index == 7) {
+            return c == '-' ? packed : -1;
+        }
+        int digit = c - '0';
+        if (digit < 0 || digit > 9) {
+            return -1;
+        }
+        return packed * 10 + digit;
+    }
+
+    /**
+     * Checks that the whole date was read, and that the month and day actually exist.
+     * @param   packed
+     *          the accumulated YYYYMMDD value.
+     * @param   offset
+     *          index of the first character of the date.
+     * @param   end
+     *          index right after the last character that was read.
+     * @return
+     *          the date as YYYYMMDD, or a negative error code.
+     */
+    private static int finish(int packed, int offset, int end) {
+        if (end - offset < LENGTH) {
+            return error(Math.max(offset, end));
+        }
+        int year = packed / 10000;
+        int month = packed / 100 % 100;
+        int day = packed % 100;
+        if (month < 1 || month > 12) {
+            return error(offset + 5);
+        }
+        if (day < 1 || day > TinyDate.lengthOfMonth(year, month)) {
+            return error(offset + 8);
+        }
+        return packed;
+    }
+
+    private static int error(int position) {
+        return -position - 1;
+    }
+}
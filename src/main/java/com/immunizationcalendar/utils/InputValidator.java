@@ -10,6 +10,16 @@ import com.immunizationcalendar.Form;
  * This is a "static" utility class which determines if a date (taken from user input) is in supported range.
  */
 public class InputValidator {
+    /**
+     * The earliest supported date, 1900-01-01, as YYYYMMDD (see {@link TinyDate#asNumber()}).
+     */
+    public static final int MIN_DATE = 19000101;
+
+    /**
+     * The latest supported date, 3000-12-31, as YYYYMMDD (see {@link TinyDate#asNumber()}).
+     */
+    public static final int MAX_DATE = 30001231;
+
     /**
      * A reference to the input {@link Form}.
      */
@@ -29,9 +39,9 @@ public class InputValidator {
      * Checks if the inputted date (provided as a YYYY-MM-DD <code>String</code>) falls within supported range.
      * <p>The range starts on <i>dateOfBirth</i> (taken from the {@link #form}), but no earlier than 1900-01-01; and
      * ends on 3000-12-31 (you're welcome, future mankind!).</p>
-     * <p>Note that this method merely checks the <strong>values</strong> and says nothing about the format.</p>
+     * <p>Malformed dates (see {@link DateParser}) are never in range.</p>
      * @param   date
-     *          a date tested if it falls within accepted range; assumed to be a valid YYYY-MM-DD <code>String</code>.
+     *          a date tested if it falls within accepted range, as a YYYY-MM-DD <code>String</code>.
      * @return
      *          <code>true</code> if the date is no later than 3000-12-31 AND no earlier than the date of birth or
      *          1900-01-01 (whichever comes later); <code>false</code> otherwise.
@@ -41,20 +51,13 @@ public class InputValidator {
             return true;
         }
 
-        String[] dateMinimums = new String[]{"1900-01-01", form.getDateOfBirth()};
-        String[] dateMaximums = new String[]{"3000-12-31"};
-        int dateAsNumber = TinyDate.of(date).asNumber();
-
-        for (String min : dateMinimums) {
-            if (dateAsNumber < TinyDate.of(min).asNumber()) {
-                return false;
-            }
+        int dateAsNumber = DateParser.parse(date);
+        if (!DateParser.isValid(dateAsNumber) || dateAsNumber < MIN_DATE || dateAsNumber > MAX_DATE) {
+            return false;
         }
-        for (String max : dateMaximums) {
-            if (dateAsNumber > TinyDate.of(max).asNumber()) {
-                return false;
-            }
-        }
-        return true;
+
+        //no date of birth (yet) means there's no additional lower bound
+        int dateOfBirth = DateParser.parse(form.getDateOfBirth());
+        return !DateParser.isValid(dateOfBirth) || dateAsNumber >= dateOfBirth;
     }
 }
@@ -1,5 +1,8 @@
 package com.immunizationcalendar.utils;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * <strong>TinyDate</strong> provides a simple representation of a date, formatted as YYYY-MM-DD (which is
  * the standard used by web browsers for input fields).
@@ -15,6 +18,28 @@ public class TinyDate {
     private final int month;
     private final int day;
 
+    /**
+     * The same date as a number of days since 1970-01-01 (which is day 0, just like in <code>LocalDate</code>).
+     * Computed once during construction, this makes date arithmetic a simple integer operation.
+     */
+    private final int epochDay;
+
+    /**
+     * The YYYY-MM-DD representation of this date, created lazily by {@link #toString()}.
+     */
+    private String iso;
+
+    /**
+     * Number of days in a full 400-year cycle of the Gregorian calendar.
+     */
+    private static final int DAYS_PER_ERA = 146097;
+
+    /**
+     * Number of days between 0000-03-01 (the start of the "shifted" calendar used by the epoch day conversions) and
+     * 1970-01-01.
+     */
+    private static final int DAYS_0000_03_01_TO_1970 = 719468;
+
     /**
      * Maps the month to its length in days. <strong>The order (index) is important</strong> (for example, JANUARY at
      * index 1), because it's used to (also) map the month to its numeric representation. Which is a bit
@@ -58,20 +83,6 @@ public class TinyDate {
             return daysInMonth;
         }
 
-        /**
-         * Calculates the number of days from a given day to the end of this month ("0" if it's the last day of the
-         * month, "1" if there's one day left and so on). Accounts for leap years.
-         * @param   currentDay
-         *          the current day of the month.
-         * @param   leapYear
-         *          <code>true</code> for a leap (366 day) year, <code>false</code> for a normal (365 day) year.
-         * @return
-         *          the number of days left until the end of this month.
-         */
-        private int daysLeft(int currentDay, boolean leapYear) {
-            return this.daysIn(leapYear) - currentDay;
-        }
-
     }
 
     /**
@@ -83,21 +94,33 @@ public class TinyDate {
     private final static Month[] monthsByValue = Month.values();
 
     /**
-     * Constructs a TinyDate from a YYYY-MM-DD <code>String</code>.
-     *
-     * <p>This constructor assumes that input is properly formatted.</p>
-     * @param   date
-     *          Properly formatted YYYY-MM-DD string.
+     * First year covered by the {@link #canonical} cache (matches {@link InputValidator#MIN_DATE}).
      */
-    public TinyDate(String date) {
-        //YYYY-MM-DD
-        this.year = Integer.parseInt(date.substring(0, 4));
-        this.month = Integer.parseInt(date.substring(5, 7));
-        this.day = Integer.parseInt(date.substring(8, 10));
-    }
+    private static final int FIRST_CACHED_YEAR = InputValidator.MIN_DATE / 10000;
+
+    /**
+     * Last year covered by the {@link #canonical} cache (matches {@link InputValidator#MAX_DATE}).
+     */
+    private static final int LAST_CACHED_YEAR = InputValidator.MAX_DATE / 10000;
 
     /**
-     * Constructs a TinyDate from individual year/month/day values.
+     * Number of slots reserved for a single year in the {@link #canonical} cache: 12 months of 31 days each, so
+     * that a slot can be computed straight from the YYYYMMDD number. A handful of them (such as February 30th) always
+     * stay empty.
+     */
+    private static final int SLOTS_PER_YEAR = 12 * 31;
+
+    /**
+     * Flyweight cache of canonical TinyDates in the supported range (see {@link InputValidator}), one chunk per year.
+     * A chunk is created (and filled with every day of its year) the first time any of its dates is requested, and
+     * then shared forever. Dates outside the range are simply created on demand.
+     */
+    private static final AtomicReferenceArray<TinyDate[]> canonical =
+            new AtomicReferenceArray<>(LAST_CACHED_YEAR - FIRST_CACHED_YEAR + 1);
+
+    /**
+     * Constructs a TinyDate from individual year/month/day values. Use the <code>of...</code> factory methods
+     * instead, which return the shared, canonical instance for every supported date.
      * @param   year
      *          year, assumed to be >= 1000
      * @param   month
@@ -105,57 +128,189 @@ public class TinyDate {
      * @param   day
      *          day, assumed to fall within bounds of the given month
      */
-    public TinyDate(int year, int month, int day) {
+    private TinyDate(int year, int month, int day) {
         this.year = year;
         this.month = month;
         this.day = day;
+        this.epochDay = toEpochDay(year, month, day);
     }
 
     /**
      * Factory method that returns a TinyDate corresponding to the given String.
-     *
-     * <p>This method assumes that input is properly formatted.</p>
      * @param   date
      *          Properly formatted YYYY-MM-DD string.
      * @return
-     *          A TinyDate object constructed from this string.
+     *          A TinyDate object representing this string.
+     * @throws  IllegalArgumentException
+     *          if the string isn't a valid YYYY-MM-DD date.
      */
     public static TinyDate of(String date) {
-        return new TinyDate(date);
+        return ofNumber(checkedNumber(date));
     }
 
     /**
-     * Returns a new TinyDate that represents a date that's some <code>offset</code> days after this date
-     * (represented by this TinyDate object).
-     * @param   offset
-     *          the number of days to add to this date.
+     * Factory method that returns a TinyDate corresponding to individual year/month/day values.
+     * @param   year
+     *          year, assumed to be >= 1000
+     * @param   month
+     *          month in natural indexing (January is 1, February 2 and so on)
+     * @param   day
+     *          day of the month
      * @return
-     *          the new TinyDate, <code>offset</code> days later.
+     *          A TinyDate object representing that date.
+     * @throws  IllegalArgumentException
+     *          if there's no such day (for example February 30th).
      */
-    public TinyDate addDays(int offset) {
-        int y = year;
-        int m = month;
-        int d = day;
-
-        int daysLeft = monthsByValue[m].daysLeft(d, isLeapYear(y));
-
-        //add days month after month
-        while (offset > daysLeft) {
-            offset -= daysLeft;
-            d = 0;
-
-            if (m == 12) {
-                m = 1;
-                y++;
-            } else {
-                m++;
+    public static TinyDate of(int year, int month, int day) {
+        TinyDate cached = lookup(year, month, day);
+        if (cached != null) {
+            return cached;
+        }
+        //a day that doesn't exist would have the epoch day of a real one, and be equal to it
+        if (day < 1 || day > lengthOfMonth(year, month)) {
+            throw new IllegalArgumentException("Invalid date " + year + "-" + month + "-" + day);
+        }
+        return new TinyDate(year, month, day);
+    }
+
+    /**
+     * Factory method that returns a TinyDate corresponding to the given numeric representation.
+     * @param   dateAsNumber
+     *          a date as YYYYMMDD, as returned by {@link #asNumber()} or {@link DateParser}.
+     * @return
+     *          A TinyDate object representing that date.
+     * @throws  IllegalArgumentException
+     *          if there's no such day.
+     */
+    public static TinyDate ofNumber(int dateAsNumber) {
+        return of(dateAsNumber / 10000, dateAsNumber / 100 % 100, dateAsNumber % 100);
+    }
+
+    /**
+     * Finds the canonical instance of a date in the {@link #canonical} cache, creating its year's chunk if needed.
+     * @return
+     *          the shared TinyDate, or <code>null</code> if the date is outside the cached range or doesn't exist.
+     */
+    private static TinyDate lookup(int year, int month, int day) {
+        if (year < FIRST_CACHED_YEAR || year > LAST_CACHED_YEAR || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        int chunkIndex = year - FIRST_CACHED_YEAR;
+        TinyDate[] chunk = canonical.get(chunkIndex);
+        if (chunk == null) {
+            //two threads may race to build the same year; only the first one gets published, so identity holds
+            canonical.compareAndSet(chunkIndex, null, buildChunk(year));
+            chunk = canonical.get(chunkIndex);
+        }
+        return chunk[(month - 1) * 31 + day - 1];
+    }
+
+    /**
+     * Creates every day of the given year, laid out as described in {@link #SLOTS_PER_YEAR}.
+     */
+    private static TinyDate[] buildChunk(int year) {
+        TinyDate[] chunk = new TinyDate[SLOTS_PER_YEAR];
+        for (int m = 1; m <= 12; m++) {
+            int length = lengthOfMonth(year, m);
+            for (int d = 1; d <= length; d++) {
+                chunk[(m - 1) * 31 + d - 1] = new TinyDate(year, m, d);
             }
+        }
+        return chunk;
+    }
 
-            daysLeft = monthsByValue[m].daysLeft(d, isLeapYear(y));
+    /**
+     * Parses a YYYY-MM-DD <code>String</code> with the {@link DateParser}, turning any error into an exception.
+     * @param   date
+     *          the string to parse.
+     * @return
+     *          the date as YYYYMMDD.
+     */
+    private static int checkedNumber(String date) {
+        int result = DateParser.parse(date);
+        if (!DateParser.isValid(result)) {
+            throw new IllegalArgumentException("Malformed date \"" + date + "\" at index "
+                    + DateParser.errorPosition(result));
         }
-        d += offset;
+        return result;
+    }
 
-        return new TinyDate(y, m, d);
+    /**
+     * Factory method that returns a TinyDate for the given number of days since 1970-01-01.
+     * @param   epochDay
+     *          the number of days since 1970-01-01 (negative for earlier dates).
+     * @return
+     *          the TinyDate falling on that day.
+     */
+    public static TinyDate ofEpochDay(int epochDay) {
+        //see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        //the year is shifted to start in March, so that the leap day is always the last day of the year
+        int shifted = epochDay + DAYS_0000_03_01_TO_1970;
+        int era = Math.floorDiv(shifted, DAYS_PER_ERA);
+        int dayOfEra = shifted - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+
+        int d = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int m = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int y = yearOfEra + era * 400 + (m <= 2 ? 1 : 0);
+
+        return of(y, m, d);
+    }
+
+    /**
+     * Returns the TinyDate that represents a date that's some <code>offset</code> days after this date
+     * (represented by this TinyDate object). Runs in constant time, regardless of the offset.
+     * @param   offset
+     *          the number of days to add to this date (may be negative).
+     * @return
+     *          the TinyDate <code>offset</code> days later.
+     */
+    public TinyDate addDays(int offset) {
+        return ofEpochDay(epochDay + offset);
+    }
+
+    /**
+     * Counts the days from this date to <code>otherDate</code>.
+     * @param   otherDate
+     *          the end date.
+     * @return
+     *          the number of days between the two dates; negative if <code>otherDate</code> comes earlier.
+     */
+    public int daysBetween(TinyDate otherDate) {
+        return otherDate.epochDay - this.epochDay;
+    }
+
+    /**
+     * Returns this date as the number of days since 1970-01-01.
+     * @return
+     *          the epoch day of this date; 0 for 1970-01-01, negative for earlier dates.
+     */
+    public int toEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * Converts a year/month/day triple to the number of days since 1970-01-01, in constant time.
+     * @param   year
+     *          year.
+     * @param   month
+     *          month in natural indexing (January is 1, February 2 and so on).
+     * @param   day
+     *          day of the month.
+     * @return
+     *          the epoch day of the given date.
+     */
+    public static int toEpochDay(int year, int month, int day) {
+        //see http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int shiftedMonth = month > 2 ? month - 3 : month + 9;
+        int dayOfYear = (153 * shiftedMonth + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_03_01_TO_1970;
     }
 
     /**
@@ -177,7 +332,7 @@ public class TinyDate {
      *          <code>true</code> if this date is strictly later than otherDate, <code>false</code> otherwise.
      */
     public boolean after(String otherDate) {
-        return after(new TinyDate(otherDate));
+        return after(of(otherDate));
     }
 
     /**
@@ -194,13 +349,90 @@ public class TinyDate {
      * Returns this date as a YYYY-MM-DD String. The result will be properly formatted, with the month and day always
      * taking two characters (i.e. "01" instead of "1" for January), except for the year, which is assumed to be >=
      * 1000 naturally.
+     * <p>The String is created on first use and then kept with this (shared) TinyDate, so repeated calls are
+     * free.</p>
      * @return
      *          the <code>String</code> representation of this date.
      */
     @Override
     public String toString() {
+        //benign race: at worst, two threads build equal Strings and one of them wins
+        String result = iso;
+        if (result == null) {
+            char[] chars = new char[DateParser.LENGTH];
+            formatTo(chars, 0);
+            result = new String(chars);
+            iso = result;
+        }
+        return result;
+    }
+
+    /**
+     * Appends this date, as YYYY-MM-DD, to a <code>StringBuilder</code>.
+     * @param   destination
+     *          the builder to append to.
+     * @return
+     *          the same builder, for chaining.
+     */
+    public StringBuilder formatTo(StringBuilder destination) {
         //this wouldn't work for Mieszko I
-        return year + "-" + fixLength(month) + "-" + fixLength(day);
+        for (int i = 0; i < DateParser.LENGTH; i++) {
+            destination.append((char) charAt(i));
+        }
+        return destination;
+    }
+
+    /**
+     * Writes this date, as YYYY-MM-DD, into a <code>char[]</code>.
+     * @param   destination
+     *          the array to write to; must have room for {@link DateParser#LENGTH} characters after
+     *          <code>offset</code>.
+     * @param   offset
+     *          index of the first character to write.
+     * @return
+     *          the index right after the last written character.
+     */
+    public int formatTo(char[] destination, int offset) {
+        for (int i = 0; i < DateParser.LENGTH; i++) {
+            destination[offset + i] = (char) charAt(i);
+        }
+        return offset + DateParser.LENGTH;
+    }
+
+    /**
+     * Writes this date, as YYYY-MM-DD in ASCII, at the current position of a <code>ByteBuffer</code>, advancing the
+     * position by {@link DateParser#LENGTH}.
+     * @param   destination
+     *          the buffer to write to.
+     * @return
+     *          the same buffer, for chaining.
+     */
+    public ByteBuffer formatTo(ByteBuffer destination) {
+        for (int i = 0; i < DateParser.LENGTH; i++) {
+            destination.put((byte) charAt(i));
+        }
+        return destination;
+    }
+
+    /**
+     * Helper method that returns a single character of the YYYY-MM-DD representation of this date.
+     * @param   index
+     *          index of the character, 0-9.
+     * @return
+     *          the character at that index.
+     */
+    private int charAt(int index) {
+        switch (index) {
+            case 0: return '0' + year / 1000 % 10;
+            case 1: return '0' + year / 100 % 10;
+            case 2: return '0' + year / 10 % 10;
+            case 3: return '0' + year % 10;
+            case 5: return '0' + month / 10;
+            case 6: return '0' + month % 10;
+            case 8: return '0' + day / 10;
+            case 9: return '0' + day % 10;
+            default: return '-';
+        }
     }
 
     /**
@@ -210,7 +442,7 @@ public class TinyDate {
      * @return
      *          <code>true</code> for a leap (366 day) year, <code>false</code> for a normal (365 day) year.
      */
-    private boolean isLeapYear(int year) {
+    public static boolean isLeapYear(int year) {
         //leap year = divisible by 4
         //except NOT a leap year if also divisible by 100
         //UNLESS also divisible by 400
@@ -219,37 +451,35 @@ public class TinyDate {
     }
 
     /**
-     * Helper method to add a leading "0" to a single-digit day/month, for example turning January "1" to "01". Used
-     * to represent days/months as proper MM-DD <code>String</code>s.
-     * @param dateFragment
-     *          either day or month to convert.
+     * Gets the length of a month, accounting for leap years.
+     * @param   year
+     *          the year in question.
+     * @param   month
+     *          month in natural indexing (January is 1, February 2 and so on).
      * @return
-     *          the day/month as a DD/MM <code>String</code>.
+     *          the number of days in that month, or 0 if the month is out of the 1-12 range.
      */
-    private String fixLength(int dateFragment) {
-        if (dateFragment < 10) {
-            return "0" + dateFragment;
+    public static int lengthOfMonth(int year, int month) {
+        if (month < 1 || month > 12) {
+            return 0;
         }
-        return "" + dateFragment;
+        return monthsByValue[month].daysIn(isLeapYear(year));
     }
 
+    /**
+     * Dates within the supported range are canonical, so for them this is just an identity check. Dates outside of
+     * it are still compared by value.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        TinyDate tinyDate = (TinyDate) o;
-
-        if (year != tinyDate.year) return false;
-        if (month != tinyDate.month) return false;
-        return day == tinyDate.day;
+        return epochDay == ((TinyDate) o).epochDay;
     }
 
     @Override
     public int hashCode() {
-        int result = year;
-        result = 31 * result + month;
-        result = 31 * result + day;
-        return result;
+        return epochDay;
     }
 }
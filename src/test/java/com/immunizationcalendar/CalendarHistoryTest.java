@@ -0,0 +1,224 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies random edits to a calendar and to a plain <code>TreeMap</code> model side by side, then checks that undo
+ * and redo bring the calendar (and its snapshot) back to every recorded state of the model.
+ */
+class CalendarHistoryTest {
+
+    private static final TinyDate START = TinyDate.of("2024-01-01");
+
+    private final List<VaccineType> types = List.of(new VaccineType.Builder().create("A"),
+            new VaccineType.Builder().create("B"), new VaccineType.Builder().create("C"));
+
+    @Test
+    void undoAndRedoWalkThroughEveryState() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            VaccinationCalendar calendar = new VaccinationCalendar();
+            CalendarHistory history = new CalendarHistory(calendar, 1000);
+            TreeMap<Integer, List<Dose>> model = new TreeMap<>();
+            List<TreeMap<Integer, List<Dose>>> states = new ArrayList<>();
+            states.add(copy(model));
+
+            for (int i = 0; i < 200; i++) {
+                if (edit(random, calendar, model)) {
+                    states.add(copy(model));
+                }
+                assertMatches(model, calendar);
+            }
+            assertEquals(states.size() - 1, history.getUndoDepth());
+
+            //wander back and forth through the history
+            int position = states.size() - 1;
+            for (int i = 0; i < 500; i++) {
+                if (random.nextBoolean()) {
+                    assertEquals(position > 0, history.undo());
+                    position = Math.max(0, position - 1);
+                } else {
+                    assertEquals(position < states.size() - 1, history.redo());
+                    position = Math.min(states.size() - 1, position + 1);
+                }
+                assertMatches(states.get(position), calendar);
+            }
+
+            //a new edit drops whatever could have been redone
+            model = copy(states.get(position));
+            while (!edit(random, calendar, model)) {
+                //the edit happened to change nothing, try another one
+            }
+            assertFalse(history.canRedo());
+            assertEquals(position + 1, history.getUndoDepth());
+            assertMatches(model, calendar);
+            assertTrue(history.undo());
+            assertMatches(states.get(position), calendar);
+        }
+    }
+
+    @Test
+    void forgetsStepsBeyondItsDepth() {
+        VaccinationCalendar calendar = new VaccinationCalendar();
+        CalendarHistory history = new CalendarHistory(calendar, 3);
+        for (int i = 0; i < 5; i++) {
+            calendar.beginBatch().addDose(new Dose(types.get(0), START.addDays(i))).commit();
+        }
+
+        assertEquals(3, history.getUndoDepth());
+        while (history.undo()) {
+            //undo everything that's left
+        }
+        assertEquals(2, calendar.get().size());
+        assertEquals(3, history.getRedoDepth());
+    }
+
+    @Test
+    void restoringASnapshotNotifiesOnlyTheDaysThatDiffer() {
+        VaccinationCalendar calendar = new VaccinationCalendar();
+        calendar.beginBatch()
+                .addDose(new Dose(types.get(0), START))
+                .addDose(new Dose(types.get(1), START.addDays(10)))
+                .commit();
+        CalendarSnapshot saved = calendar.snapshot();
+        TreeMap<Integer, List<Dose>> model = contentOf(calendar);
+
+        calendar.removeDate(calendar.getScheduleFor(START.addDays(10)));
+        calendar.beginBatch().addDose(new Dose(types.get(2), START.addDays(20))).commit();
+        List<CalendarChange> changes = new ArrayList<>();
+        calendar.addChangeListener(changes::add);
+        calendar.restore(saved);
+
+        assertMatches(model, calendar);
+        assertEquals(1, changes.size());
+        assertFalse(changes.get(0).affects(START));
+        assertTrue(changes.get(0).affects(START.addDays(10)));
+        assertTrue(changes.get(0).affects(START.addDays(20)));
+    }
+
+    /**
+     * Applies a random edit to both the calendar and the model.
+     * @return
+     *          <code>true</code> if anything changed (and should therefore be a step of the history).
+     */
+    private boolean edit(Random random, VaccinationCalendar calendar, TreeMap<Integer, List<Dose>> model) {
+        List<ScheduleForDay> dates = calendar.get();
+        int operation = dates.isEmpty() ? 0 : random.nextInt(6);
+        ScheduleForDay date = dates.isEmpty() ? null : dates.get(random.nextInt(dates.size()));
+        switch (operation) {
+            case 0: {
+                //a batch of new doses
+                VaccinationCalendar.Batch batch = calendar.beginBatch();
+                int count = 1 + random.nextInt(3);
+                for (int i = 0; i < count; i++) {
+                    Dose dose = new Dose(types.get(random.nextInt(types.size())), START.addDays(random.nextInt(60)));
+                    batch.addDose(dose);
+                    model.computeIfAbsent(dose.getDate().toEpochDay(), day -> new ArrayList<>()).add(dose);
+                }
+                batch.commit();
+                return true;
+            }
+            case 1: {
+                Dose dose = date.getDoses().get(random.nextInt(date.getDoses().size()));
+                calendar.removeDose(date, dose);
+                removeFromModel(model, date.getEpochDay(), dose);
+                return true;
+            }
+            case 2: {
+                calendar.removeDate(date);
+                model.remove(date.getEpochDay());
+                return true;
+            }
+            case 3: {
+                int oldDay = date.getEpochDay();
+                TinyDate newDate = START.addDays(random.nextInt(60));
+                if (newDate.toEpochDay() == oldDay) {
+                    return false;
+                }
+                List<Dose> doses = model.remove(oldDay);
+                model.computeIfAbsent(newDate.toEpochDay(), day -> new ArrayList<>()).addAll(doses);
+                date.setTempDate(newDate.toString());
+                calendar.updateDate(date);
+                return true;
+            }
+            case 4: {
+                VaccineType type = types.get(random.nextInt(types.size()));
+                boolean present = calendar.countDosesOfType(type) > 0;
+                calendar.removeAllOfType(type);
+                model.values().forEach(doses -> doses.removeIf(dose -> dose.getType() == type));
+                model.values().removeIf(List::isEmpty);
+                return present;
+            }
+            default: {
+                //move a single dose, in a batch
+                Dose dose = date.getDoses().get(random.nextInt(date.getDoses().size()));
+                TinyDate newDate = START.addDays(random.nextInt(60));
+                Dose moved = new Dose(dose.getType(), newDate, dose.getAltName());
+                calendar.beginBatch().removeDose(date, dose).addDose(moved).commit();
+                removeFromModel(model, date.getEpochDay(), dose);
+                model.computeIfAbsent(newDate.toEpochDay(), day -> new ArrayList<>()).add(moved);
+                return true;
+            }
+        }
+    }
+
+    private static void removeFromModel(TreeMap<Integer, List<Dose>> model, int epochDay, Dose dose) {
+        List<Dose> doses = model.get(epochDay);
+        doses.remove(dose);
+        if (doses.isEmpty()) {
+            model.remove(epochDay);
+        }
+    }
+
+    private static TreeMap<Integer, List<Dose>> copy(TreeMap<Integer, List<Dose>> model) {
+        TreeMap<Integer, List<Dose>> copy = new TreeMap<>();
+        model.forEach((epochDay, doses) -> copy.put(epochDay, new ArrayList<>(doses)));
+        return copy;
+    }
+
+    private static TreeMap<Integer, List<Dose>> contentOf(VaccinationCalendar calendar) {
+        TreeMap<Integer, List<Dose>> content = new TreeMap<>();
+        for (ScheduleForDay date : calendar.get()) {
+            content.put(date.getEpochDay(), new ArrayList<>(date.getDoses()));
+        }
+        return content;
+    }
+
+    /**
+     * Checks the calendar, its snapshot and its per-vaccine index against the model.
+     */
+    private void assertMatches(TreeMap<Integer, List<Dose>> model, VaccinationCalendar calendar) {
+        assertEquals(model, contentOf(calendar));
+
+        TreeMap<Integer, List<Dose>> snapshot = new TreeMap<>();
+        calendar.snapshot().forEach((date, doses) -> snapshot.put(date.toEpochDay(), new ArrayList<>(doses)));
+        assertEquals(model, snapshot);
+
+        for (VaccineType type : types) {
+            List<Dose> expected = new ArrayList<>();
+            for (Map.Entry<Integer, List<Dose>> entry : model.entrySet()) {
+                for (Dose dose : entry.getValue()) {
+                    if (dose.getType() == type) {
+                        expected.add(dose);
+                    }
+                }
+            }
+            assertEquals(expected.size(), calendar.countDosesOfType(type));
+            assertEquals(new ArrayList<>(expected).stream().map(Dose::getDate).toList(),
+                    calendar.getDosesOfType(type).stream().map(Dose::getDate).toList());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalendarSnapshotTest {
+
+    private final VaccineType type = new VaccineType.Builder().create("A");
+
+    @Test
+    void everyVersionKeepsItsOwnContent() {
+        Random random = new Random(13);
+        List<CalendarSnapshot> versions = new ArrayList<>();
+        List<TreeMap<Integer, Dose[]>> models = new ArrayList<>();
+
+        CalendarSnapshot snapshot = CalendarSnapshot.of(new int[0], new Dose[0][]);
+        TreeMap<Integer, Dose[]> model = new TreeMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            int epochDay = random.nextInt(400);
+            if (random.nextInt(3) == 0) {
+                snapshot = snapshot.without(epochDay);
+                model.remove(epochDay);
+            } else {
+                Dose[] doses = {new Dose(type, TinyDate.ofEpochDay(epochDay))};
+                snapshot = snapshot.with(epochDay, doses);
+                model.put(epochDay, doses);
+            }
+            if (i % 50 == 0) {
+                versions.add(snapshot);
+                models.add(new TreeMap<>(model));
+            }
+            assertMatches(model, snapshot);
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertMatches(models.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    void staysBalancedForSortedInput() {
+        CalendarSnapshot snapshot = CalendarSnapshot.of(new int[0], new Dose[0][]);
+        TreeMap<Integer, Dose[]> model = new TreeMap<>();
+        //without rebalancing, this would be a 100,000 levels deep list, and the recursion would overflow the stack
+        for (int epochDay = 0; epochDay < 100_000; epochDay++) {
+            Dose[] doses = new Dose[0];
+            snapshot = snapshot.with(epochDay, doses);
+            model.put(epochDay, doses);
+        }
+        for (int epochDay = 99_999; epochDay >= 50_000; epochDay--) {
+            snapshot = snapshot.without(epochDay);
+            model.remove(epochDay);
+        }
+        assertMatches(model, snapshot);
+    }
+
+    @Test
+    void builtSnapshotsMatchTheirInput() {
+        for (int size = 0; size < 40; size++) {
+            int[] epochDays = new int[size];
+            Dose[][] doses = new Dose[size][];
+            TreeMap<Integer, Dose[]> model = new TreeMap<>();
+            for (int i = 0; i < size; i++) {
+                epochDays[i] = i * 3 - 20;
+                doses[i] = new Dose[]{new Dose(type, TinyDate.ofEpochDay(epochDays[i]))};
+                model.put(epochDays[i], doses[i]);
+            }
+            assertMatches(model, CalendarSnapshot.of(epochDays, doses));
+        }
+    }
+
+    @Test
+    void removingAMissingDayReturnsTheSameSnapshot() {
+        CalendarSnapshot snapshot = CalendarSnapshot.of(new int[]{1, 2}, new Dose[][]{new Dose[0], new Dose[0]});
+
+        assertSame(snapshot, snapshot.without(3));
+        assertTrue(snapshot.contains(TinyDate.ofEpochDay(2)));
+        assertFalse(snapshot.contains(TinyDate.ofEpochDay(3)));
+        assertTrue(snapshot.getDoses(TinyDate.ofEpochDay(3)).isEmpty());
+    }
+
+    private static void assertMatches(TreeMap<Integer, Dose[]> model, CalendarSnapshot snapshot) {
+        assertEquals(model.size(), snapshot.size());
+        List<Integer> days = new ArrayList<>();
+        snapshot.forEachDay((epochDay, doses) -> {
+            days.add(epochDay);
+            assertSame(model.get(epochDay), doses);
+        });
+        assertEquals(new ArrayList<>(model.keySet()), days);
+        for (Map.Entry<Integer, Dose[]> entry : model.entrySet()) {
+            assertArrayEquals(entry.getValue(), snapshot.get(entry.getKey()));
+        }
+    }
+}
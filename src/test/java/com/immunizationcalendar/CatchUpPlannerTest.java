@@ -0,0 +1,138 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatchUpPlannerTest {
+
+    /**
+     * Three doses: from 60 days of age, then 30 and 180 days apart, up to 2 years of age.
+     */
+    private final VaccineType threeDoses = type("Three doses", 3, Map.of(1, 60, 2, 30, 3, 180), 730);
+
+    /**
+     * A single dose, up to 1 year of age.
+     */
+    private final VaccineType infantOnly = type("Infant only", 1, Map.of(), 365);
+
+    private final CatchUpPlanner planner = new CatchUpPlanner(List.of(threeDoses, infantOnly));
+
+    @Test
+    void schedulesEverythingFromTodayAtMinimumIntervals() {
+        TinyDate birth = TinyDate.of("2024-01-01");
+        TinyDate today = TinyDate.of("2024-06-01");
+
+        assertEquals(List.of(
+                "2024-06-01: Three doses, Infant only",
+                "2024-07-01: Three doses",
+                "2024-12-28: Three doses"), describe(planner.plan(birth, today, List.of())));
+    }
+
+    @Test
+    void continuesFromTheLastAdministeredDose() {
+        TinyDate birth = TinyDate.of("2024-01-01");
+        List<Dose> administered = List.of(new Dose(threeDoses, TinyDate.of("2024-03-01")),
+                new Dose(infantOnly, TinyDate.of("2024-03-01")));
+
+        //the second dose is overdue, so it goes on today; the third follows 180 days later
+        assertEquals(List.of(
+                "2024-06-01: Three doses",
+                "2024-11-28: Three doses"),
+                describe(planner.plan(birth, TinyDate.of("2024-06-01"), administered)));
+        //the second dose isn't due yet
+        assertEquals(List.of(
+                "2024-03-31: Three doses",
+                "2024-09-27: Three doses"),
+                describe(planner.plan(birth, TinyDate.of("2024-03-15"), administered)));
+    }
+
+    @Test
+    void tracksDosesAdministeredBefore1970() {
+        TinyDate birth = TinyDate.of("1950-01-01");
+        List<Dose> administered = List.of(new Dose(threeDoses, TinyDate.of("1950-03-02")),
+                new Dose(threeDoses, TinyDate.of("1950-04-15")));
+
+        assertEquals(List.of("1950-05-01: Infant only", "1950-10-12: Three doses"),
+                describe(planner.plan(birth, TinyDate.of("1950-05-01"), administered)));
+    }
+
+    @Test
+    void leavesOutDosesAfterMaxAge() {
+        TinyDate birth = TinyDate.of("2024-01-01");
+
+        //exactly one year old: still eligible for the last time
+        TinyDate lastDay = birth.addDays(365);
+        assertEquals(List.of(
+                lastDay + ": Three doses, Infant only",
+                lastDay.addDays(30) + ": Three doses",
+                lastDay.addDays(210) + ": Three doses"), describe(planner.plan(birth, lastDay, List.of())));
+
+        //a day later, the infant vaccine is out of reach
+        assertEquals(List.of(
+                lastDay.addDays(1) + ": Three doses",
+                lastDay.addDays(31) + ": Three doses",
+                lastDay.addDays(211) + ": Three doses"),
+                describe(planner.plan(birth, lastDay.addDays(1), List.of())));
+
+        //the third dose would fall after the second birthday
+        TinyDate late = birth.addDays(600);
+        assertEquals(List.of(
+                late + ": Three doses",
+                late.addDays(30) + ": Three doses"), describe(planner.plan(birth, late, List.of())));
+
+        assertTrue(planner.plan(birth, birth.addDays(731), List.of()).isEmpty());
+    }
+
+    @Test
+    void ignoresVaccinesOutsideTheSelection() {
+        VaccineType other = type("Other", 1, Map.of(), Integer.MAX_VALUE);
+        TinyDate birth = TinyDate.of("2024-01-01");
+
+        assertEquals(describe(planner.plan(birth, birth.addDays(100), List.of())),
+                describe(planner.plan(birth, birth.addDays(100), List.of(new Dose(other, birth)))));
+    }
+
+    @Test
+    void rejectsSchemesWithoutMinimumOffsets() {
+        VaccineType noOffsets = type("No offsets", 3, Map.of(1, 0), Integer.MAX_VALUE);
+        VaccineType sameDay = type("Same day", 2, Map.of(2, 0), Integer.MAX_VALUE);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new CatchUpPlanner(List.of(threeDoses, noOffsets)));
+        assertTrue(e.getMessage().contains("No offsets"), e.getMessage());
+        //an explicit 0 is fine
+        assertEquals(List.of("2024-01-01: Same day, Same day"),
+                describe(new CatchUpPlanner(List.of(sameDay)).plan(TinyDate.of("2024-01-01"),
+                        TinyDate.of("2024-01-01"), List.of())));
+    }
+
+    private static VaccineType type(String name, int doses, Map<Integer, Integer> minOffsets, int maxAge) {
+        return new VaccineType.Builder()
+                .withVaccineSceheme(new VaccineScheme(doses, new HashMap<>(minOffsets), new HashMap<>(), maxAge))
+                .create(name);
+    }
+
+    private static List<String> describe(List<ScheduleForDay> dates) {
+        List<String> result = new ArrayList<>();
+        for (ScheduleForDay date : dates) {
+            StringBuilder line = new StringBuilder(date.getDate()).append(": ");
+            for (Dose dose : date.getDoses()) {
+                line.append(dose.getType().getName()).append(", ");
+            }
+            result.add(line.substring(0, line.length() - 2));
+        }
+        return result;
+    }
+}
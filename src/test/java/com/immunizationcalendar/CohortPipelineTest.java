@@ -0,0 +1,102 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CohortPipelineTest {
+
+    @TempDir
+    Path directory;
+
+    private final VaccineType typeA = new VaccineType.Builder()
+            .withVaccineSceheme(new VaccineScheme(3, new HashMap<>(Map.of(1, 0, 2, 30, 3, 60)), new HashMap<>(),
+                    Integer.MAX_VALUE))
+            .create("A");
+    private final VaccineType typeB = new VaccineType.Builder().create("B");
+
+    @Test
+    void writesEveryRowInInputOrder() throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            TinyDate birth = TinyDate.of("2020-01-01").addDays(i);
+            TinyDate start = birth.addDays(i % 40);
+            List<VaccineType> vaccines = i % 3 == 0 ? List.of(typeB) : List.of(typeA, typeB);
+            StringBuilder line = new StringBuilder(birth + "," + start + ",");
+            for (VaccineType vaccine : vaccines) {
+                line.append(vaccine.getId()).append(' ');
+            }
+            lines.add(line.toString().trim());
+            for (ScheduleForDay date : ScheduleGenerator.generate(start, birth, vaccines)) {
+                for (Dose dose : date.getDoses()) {
+                    expected.append(i + 1).append(',').append(date.getDate()).append(',')
+                            .append(dose.getAltName()).append('\n');
+                }
+            }
+        }
+
+        StringWriter output = new StringWriter();
+        CohortPipeline.Stats stats = new CohortPipeline(List.of(typeA, typeB), 4, 16).run(write(lines), output);
+
+        assertEquals(expected.toString(), output.toString());
+        assertEquals(500, stats.getRowsRead());
+        assertEquals(500, stats.getRowsWritten());
+        assertEquals(0, stats.getRowsRejected());
+    }
+
+    @Test
+    void skipsCommentsAndCountsMalformedRows() throws IOException {
+        int unknownId = typeB.getId() + 1000;
+        List<String> lines = List.of(
+                "# header",
+                "",
+                "2024-01-15,2024-02-01," + typeA.getId(),
+                "2024-02-30,2024-03-01," + typeA.getId(),
+                "2024-01-15;2024-02-01," + typeA.getId(),
+                "2024-01-15,2024-02-01," + unknownId,
+                "2024-01-15,2024-02-01,x",
+                "2024-01-15,2024-02-01," + typeB.getId());
+
+        StringWriter output = new StringWriter();
+        CohortPipeline.Stats stats = new CohortPipeline(List.of(typeA, typeB), 2, 4).run(write(lines), output);
+
+        assertEquals(2, stats.getRowsRead());
+        assertEquals(4, stats.getRowsRejected());
+        assertEquals(4, stats.getDosesWritten());
+        assertTrue(output.toString().endsWith("8,2024-02-01,B\n"), output.toString());
+    }
+
+    @Test
+    void idOverflowStopsTheRun() throws IOException {
+        Path input = write(List.of("2024-01-15,2024-02-01," + typeA.getId(),
+                "2024-01-15,2024-02-01,99999999999"));
+
+        IOException e = assertThrows(IOException.class,
+                () -> new CohortPipeline(List.of(typeA, typeB), 2, 4).run(input, new StringWriter()));
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+    }
+
+    private Path write(List<String> lines) throws IOException {
+        Path input = directory.resolve("cohort.csv");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+        return input;
+    }
+}
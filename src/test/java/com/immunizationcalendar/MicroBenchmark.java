@@ -0,0 +1,69 @@
+package com.immunizationcalendar;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A minimal benchmark harness for the <code>*Benchmark</code> test classes. It's no JMH, but it warms the code up,
+ * keeps the results alive (so that the JIT can't drop the measured work) and reports the average time per operation.
+ *
+ * <p>Benchmarks are skipped during a normal build. Run them with:
+ * <br><code>mvn test -Dbenchmark=true -Dtest=*Benchmark</code></p>
+ */
+public final class MicroBenchmark {
+
+    /**
+     * Name of the system property which enables the benchmarks.
+     */
+    public static final String ENABLED_PROPERTY = "benchmark";
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    /**
+     * Sink for the results of the measured operations.
+     */
+    private static volatile int sink;
+
+    private MicroBenchmark() {
+    }
+
+    /**
+     * Measures an operation, and prints its average time.
+     * @param   name
+     *          name of the operation, for the report.
+     * @param   operations
+     *          number of times the operation is executed per round.
+     * @param   operation
+     *          the measured code. Receives the index of the operation (0 to <code>operations - 1</code>), and
+     *          should return something derived from its result.
+     * @return
+     *          the average time of a single operation, in nanoseconds.
+     */
+    public static double measure(String name, int operations, IntUnaryOperator operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(operations, operation);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long time = run(operations, operation);
+            best = Math.min(best, time);
+            total += time;
+        }
+        double average = (double) total / MEASURED_ROUNDS / operations;
+        System.out.printf("%-40s %10.1f ns/op (best round %.1f ns/op)%n",
+                name, average, (double) best / operations);
+        return average;
+    }
+
+    private static long run(int operations, IntUnaryOperator operation) {
+        int result = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            result += operation.applyAsInt(i);
+        }
+        long time = System.nanoTime() - start;
+        sink += result;
+        return time;
+    }
+}
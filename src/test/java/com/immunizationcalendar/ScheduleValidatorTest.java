@@ -0,0 +1,152 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScheduleValidatorTest {
+
+    private static final TinyDate START = TinyDate.of("2024-01-01");
+
+    private final VaccineType threeDoses = new VaccineType.Builder()
+            .withVaccineSceheme(new VaccineScheme(3, new HashMap<>(Map.of(1, 0, 2, 30, 3, 60)), new HashMap<>(),
+                    Integer.MAX_VALUE))
+            .create("Three doses");
+    private final VaccineType live = new VaccineType.Builder()
+            .withVaccineSceheme(new VaccineScheme(2, new HashMap<>(Map.of(2, 20)), new HashMap<>(),
+                    Integer.MAX_VALUE))
+            .withTags(VaccTag.LIVE)
+            .create("Live");
+    private final VaccineType otherLive = new VaccineType.Builder().withTags(VaccTag.LIVE).create("Other live");
+    private final VaccineType unconstrained = new VaccineType.Builder().create("Unconstrained");
+
+    private final List<VaccineType> types = List.of(threeDoses, live, otherLive, unconstrained);
+
+    @Test
+    void findsMinimumOffsetViolations() {
+        VaccinationCalendar calendar = new VaccinationCalendar();
+        calendar.beginBatch()
+                .addDose(new Dose(threeDoses, START))
+                .addDose(new Dose(threeDoses, START.addDays(20)))
+                .addDose(new Dose(threeDoses, START.addDays(100)))
+                .commit();
+
+        List<String> violations = describe(calendar.getViolations());
+        assertEquals(List.of("MIN_OFFSET Three doses 2024-01-21 after 2024-01-01, 30 days required"), violations);
+
+        ScheduleForDay second = calendar.getScheduleFor(START.addDays(20));
+        second.setTempDate(START.addDays(30).toString());
+        calendar.updateDate(second);
+        assertTrue(calendar.getViolations().isEmpty());
+    }
+
+    @Test
+    void findsLiveVaccinesTooCloseToEachOther() {
+        VaccinationCalendar calendar = new VaccinationCalendar();
+        calendar.beginBatch()
+                .addDose(new Dose(live, START))
+                .addDose(new Dose(otherLive, START))
+                .addDose(new Dose(otherLive, START.addDays(27)))
+                .commit();
+
+        assertEquals(List.of("LIVE_SPACING 2024-01-28 after 2024-01-01, 28 days required"),
+                describe(calendar.getViolations()));
+
+        calendar.removeDose(calendar.getScheduleFor(START.addDays(27)),
+                calendar.getScheduleFor(START.addDays(27)).getDoses().get(0));
+        assertTrue(calendar.getViolations().isEmpty());
+    }
+
+    @Test
+    void incrementalChecksMatchAFullRevalidation() {
+        for (long seed = 0; seed < 30; seed++) {
+            Random random = new Random(seed);
+            VaccinationCalendar calendar = new VaccinationCalendar();
+            //from now on, the validator is only updated incrementally
+            calendar.getViolations();
+
+            for (int i = 0; i < 150; i++) {
+                edit(random, calendar);
+                if (random.nextInt(3) > 0) {
+                    List<String> incremental = describe(calendar.getViolations());
+                    assertSortedByDate(calendar.getViolations());
+                    //a fresh copy has to check everything from scratch
+                    List<String> full = describe(calendar.copy().getViolations());
+                    //violations on the same day may come in any order
+                    incremental.sort(null);
+                    full.sort(null);
+                    assertEquals(full, incremental, "seed " + seed + ", edit " + i);
+                }
+            }
+        }
+    }
+
+    private void edit(Random random, VaccinationCalendar calendar) {
+        List<ScheduleForDay> dates = calendar.get();
+        int operation = dates.size() < 3 ? 0 : random.nextInt(5);
+        ScheduleForDay date = dates.isEmpty() ? null : dates.get(random.nextInt(dates.size()));
+        switch (operation) {
+            case 0: {
+                VaccinationCalendar.Batch batch = calendar.beginBatch();
+                int count = 1 + random.nextInt(3);
+                for (int i = 0; i < count; i++) {
+                    VaccineType type = types.get(random.nextInt(types.size()));
+                    batch.addDose(new Dose(type, START.addDays(random.nextInt(200))));
+                }
+                batch.commit();
+                break;
+            }
+            case 1:
+                calendar.removeDose(date, date.getDoses().get(random.nextInt(date.getDoses().size())));
+                break;
+            case 2:
+                date.setTempDate(START.addDays(random.nextInt(200)).toString());
+                calendar.updateDate(date);
+                break;
+            case 3: {
+                Dose dose = date.getDoses().get(random.nextInt(date.getDoses().size()));
+                dose.setTempDate(START.addDays(random.nextInt(200)).toString());
+                calendar.updateDose(date, dose);
+                break;
+            }
+            default:
+                calendar.removeAllOfType(types.get(random.nextInt(types.size())));
+        }
+    }
+
+    private static void assertSortedByDate(Collection<ScheduleViolation> violations) {
+        TinyDate previous = null;
+        for (ScheduleViolation violation : violations) {
+            assertTrue(previous == null || !previous.after(violation.getDate()), violations.toString());
+            previous = violation.getDate();
+        }
+    }
+
+    /**
+     * Describes violations without referring to particular Dose objects: doses of the same vaccine sharing a day
+     * are interchangeable, and so are the live doses of a day.
+     */
+    private static List<String> describe(Collection<ScheduleViolation> violations) {
+        List<String> result = new ArrayList<>();
+        for (ScheduleViolation violation : violations) {
+            String vaccine = violation.getKind() == ScheduleViolation.Kind.MIN_OFFSET
+                    ? violation.getDose().getType().getName() + " " : "";
+            result.add(violation.getKind() + " " + vaccine + violation.getDate() + " after "
+                    + violation.getPreviousDate() + ", " + violation.getRequiredDays() + " days required");
+        }
+        return result;
+    }
+}
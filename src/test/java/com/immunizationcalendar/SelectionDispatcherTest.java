@@ -0,0 +1,74 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.datasources.NewFakeVaccineSource;
+import com.immunizationcalendar.model.VaccineType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SelectionDispatcherTest {
+
+    private final DataProvider dataProvider = new DataProvider(NewFakeVaccineSource.getInstance());
+    private final VaccineSelector selector = new VaccineSelector(dataProvider);
+    private final VaccineType first = dataProvider.getVaccines().get(0);
+    private final VaccineType second = dataProvider.getVaccines().get(1);
+
+    @Test
+    void handlersReceiveTheChangeEvenWithoutAnAttachedDispatcher() {
+        List<SelectionChange> changes = new ArrayList<>();
+        selector.addSelectionHandler(first, changes::add);
+
+        selector.setSelected(first, true);
+        selector.setSelected(first, true);
+        selector.setSelected(second, true);
+
+        assertEquals(1, changes.size());
+        assertEquals(List.of(first), changes.get(0).getSelected());
+    }
+
+    @Test
+    void transactionsRunEveryDistinctHandlerOnce() {
+        SelectionDispatcher dispatcher = new SelectionDispatcher();
+        dispatcher.attach(selector);
+        List<SelectionChange> handled = new ArrayList<>();
+        List<SelectionChange> published = new ArrayList<>();
+        Consumer<SelectionChange> handler = handled::add;
+        selector.addSelectionHandler(first, handler);
+        selector.addSelectionHandler(second, handler);
+        dispatcher.addListener(published::add);
+
+        try (SelectionDispatcher.Transaction ignored = dispatcher.beginTransaction()) {
+            selector.setSelected(first, true);
+            selector.setSelected(second, true);
+            assertTrue(handled.isEmpty());
+        }
+
+        assertEquals(1, handled.size());
+        assertEquals(List.of(first, second), handled.get(0).getSelected());
+        assertEquals(handled, published);
+    }
+
+    @Test
+    void togglingBackAndForthPublishesNothing() {
+        List<Runnable> pulse = new ArrayList<>();
+        SelectionDispatcher dispatcher = new SelectionDispatcher(pulse::add);
+        dispatcher.attach(selector);
+        List<SelectionChange> published = new ArrayList<>();
+        dispatcher.addListener(published::add);
+
+        selector.setSelected(first, true);
+        selector.setSelected(first, false);
+        selector.setSelected(second, true);
+        assertEquals(1, pulse.size());
+        pulse.get(0).run();
+
+        assertEquals(1, published.size());
+        assertEquals(List.of(second), published.get(0).getSelected());
+        assertTrue(published.get(0).getDeselected().isEmpty());
+    }
+}
@@ -0,0 +1,135 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Dose;
+import com.immunizationcalendar.model.VaccineType;
+import com.immunizationcalendar.utils.TinyDate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VaccinationCalendarTest {
+
+    private final VaccineType typeA = new VaccineType.Builder().create("A");
+    private final VaccineType typeB = new VaccineType.Builder().create("B");
+
+    private VaccinationCalendar calendar;
+    private final List<CalendarChange> changes = new ArrayList<>();
+
+    private ScheduleForDay day1;
+    private ScheduleForDay day2;
+    private ScheduleForDay day3;
+
+    @BeforeEach
+    void setUp() {
+        calendar = new VaccinationCalendar();
+        calendar.beginBatch()
+                .addDose(new Dose(typeA, TinyDate.of("2024-01-10")))
+                .addDose(new Dose(typeB, TinyDate.of("2024-01-10")))
+                .addDose(new Dose(typeA, TinyDate.of("2024-03-10")))
+                .addDose(new Dose(typeB, TinyDate.of("2024-05-10")))
+                .commit();
+        day1 = calendar.getScheduleFor(TinyDate.of("2024-01-10"));
+        day2 = calendar.getScheduleFor(TinyDate.of("2024-03-10"));
+        day3 = calendar.getScheduleFor(TinyDate.of("2024-05-10"));
+        calendar.addChangeListener(changes::add);
+    }
+
+    @Test
+    void batchIsPublishedAsASingleChange() {
+        calendar.beginBatch()
+                .moveDose(day1, day1.getDoses().get(0), TinyDate.of("2024-02-10"))
+                .removeDate(day3)
+                .addDose(new Dose(typeB, TinyDate.of("2024-03-10")))
+                .commit();
+
+        assertEquals(1, changes.size());
+        assertEquals(List.of(TinyDate.of("2024-01-10"), TinyDate.of("2024-02-10"), TinyDate.of("2024-03-10"),
+                TinyDate.of("2024-05-10")), changes.get(0).getChangedDates());
+        assertEquals(3, calendar.get().size());
+        assertEquals(2, day2.getDoses().size());
+        assertEquals(2, calendar.countDosesOfType(typeA));
+        assertEquals(2, calendar.countDosesOfType(typeB));
+    }
+
+    @Test
+    void failedBatchLeavesTheCalendarUnchanged() {
+        State before = new State(calendar);
+        Dose a1 = day1.getDoses().get(0);
+        FailingDose failing = new FailingDose(typeB, TinyDate.of("2024-06-10"));
+
+        VaccinationCalendar.Batch batch = calendar.beginBatch()
+                .removeDate(day3)
+                .removeDose(day2, day2.getDoses().get(0))
+                .moveDate(day1, TinyDate.of("2024-03-10"))
+                .moveDose(day1, a1, TinyDate.of("2024-06-10"))
+                .addDose(failing);
+        failing.armed = true;
+
+        assertThrows(IllegalStateException.class, batch::commit);
+
+        assertEquals(before, new State(calendar));
+        assertSame(day1, calendar.getScheduleFor(TinyDate.of("2024-01-10")));
+        assertSame(day2, calendar.getScheduleFor(TinyDate.of("2024-03-10")));
+        assertSame(day3, calendar.getScheduleFor(TinyDate.of("2024-05-10")));
+        assertEquals("2024-01-10", day1.getDate());
+        assertEquals(0, changes.size());
+
+        //and keeps working afterwards
+        calendar.removeDose(day2, day2.getDoses().get(0));
+        assertEquals(1, changes.size());
+        assertEquals(1, calendar.countDosesOfType(typeA));
+        assertEquals(2, calendar.get().size());
+    }
+
+    /**
+     * A dose that fails the first time it's indexed, once {@link #armed}.
+     */
+    private static class FailingDose extends Dose {
+        private boolean armed;
+
+        FailingDose(VaccineType type, TinyDate date) {
+            super(type, date);
+        }
+
+        @Override
+        public VaccineType getType() {
+            if (armed) {
+                armed = false;
+                throw new IllegalStateException("Simulated failure");
+            }
+            return super.getType();
+        }
+    }
+
+    /**
+     * Everything observable about a calendar: its days and their doses, and the per-vaccine index.
+     */
+    private record State(List<String> days, List<List<Dose>> doses, List<Dose> dosesOfA, List<Dose> dosesOfB) {
+
+        State(VaccinationCalendar calendar) {
+            this(new ArrayList<>(), new ArrayList<>(), calendar.getDosesOfType(firstType(calendar, "A")),
+                    calendar.getDosesOfType(firstType(calendar, "B")));
+            for (ScheduleForDay date : calendar.get()) {
+                days.add(date.getDate());
+                doses.add(new ArrayList<>(date.getDoses()));
+            }
+        }
+
+        private static VaccineType firstType(VaccinationCalendar calendar, String name) {
+            for (ScheduleForDay date : calendar.get()) {
+                for (Dose dose : date.getDoses()) {
+                    if (dose.getType().getName().equals(name)) {
+                        return dose.getType();
+                    }
+                }
+            }
+            throw new AssertionError("No dose of " + name);
+        }
+    }
+}
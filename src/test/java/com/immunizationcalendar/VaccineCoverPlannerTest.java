@@ -0,0 +1,178 @@
+package com.immunizationcalendar;
+
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.Recommendation;
+import com.immunizationcalendar.model.VaccineType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VaccineCoverPlannerTest {
+
+    @Test
+    void matchesBruteForceOnSmallCatalogs() {
+        for (long seed = 0; seed < 300; seed++) {
+            Random random = new Random(seed);
+            List<Disease> diseases = diseases(1 + random.nextInt(6));
+            List<VaccineType> vaccines = new ArrayList<>();
+            int count = random.nextInt(11);
+            for (int i = 0; i < count; i++) {
+                List<Disease> covered = new ArrayList<>();
+                for (Disease disease : diseases) {
+                    if (random.nextInt(3) == 0) {
+                        covered.add(disease);
+                    }
+                }
+                if (!covered.isEmpty()) {
+                    vaccines.add(new VaccineType.Builder().withDisease(covered).create("v" + i));
+                }
+            }
+            Map<Disease, VaccineType> defaults = new HashMap<>();
+            for (Disease disease : diseases) {
+                //some diseases have no default, or none at all
+                for (VaccineType vaccine : vaccines) {
+                    if (vaccine.getDisease().contains(disease) && random.nextBoolean()) {
+                        defaults.put(disease, vaccine);
+                        break;
+                    }
+                }
+            }
+            VaccineCoverPlanner planner = new VaccineCoverPlanner(vaccines, diseases, defaults);
+
+            for (int target = 0; target < 1 << diseases.size(); target++) {
+                List<Disease> chosen = new ArrayList<>();
+                for (int bit = 0; bit < diseases.size(); bit++) {
+                    if ((target & 1 << bit) != 0) {
+                        chosen.add(diseases.get(bit));
+                    }
+                }
+                List<VaccineType> plan = planner.plan(chosen);
+                assertCoversEachDiseaseOnce(chosen, plan);
+                assertEquals(bruteForce(vaccines, chosen, defaults), cost(chosen, plan, defaults),
+                        "seed " + seed + ", " + chosen);
+            }
+        }
+    }
+
+    @Test
+    void prefersDefaultVaccinesOnTies() {
+        List<Disease> diseases = diseases(2);
+        VaccineType brand = new VaccineType.Builder().withDisease(diseases.get(0)).create("brand");
+        VaccineType standard = new VaccineType.Builder().withDisease(diseases.get(0)).create("standard");
+        VaccineType combined = new VaccineType.Builder().withDisease(diseases).create("combined");
+        VaccineType single = new VaccineType.Builder().withDisease(diseases.get(1)).create("single");
+        VaccineCoverPlanner planner = new VaccineCoverPlanner(List.of(brand, standard, combined, single), diseases,
+                Map.of(diseases.get(0), standard, diseases.get(1), single));
+
+        assertEquals(List.of(standard), planner.plan(List.of(diseases.get(0))));
+        //fewer injections still beat the defaults
+        assertEquals(List.of(combined), planner.plan(diseases));
+        assertSame(planner.plan(diseases), planner.plan(diseases));
+    }
+
+    @Test
+    void neverCoversADiseaseTwice() {
+        List<Disease> diseases = diseases(3);
+        VaccineType first = new VaccineType.Builder().withDisease(diseases.get(0), diseases.get(1)).create("AB");
+        VaccineType second = new VaccineType.Builder().withDisease(diseases.get(1), diseases.get(2)).create("BC");
+        VaccineCoverPlanner planner = new VaccineCoverPlanner(List.of(first, second), diseases, Map.of());
+
+        //B would be vaccinated against twice, so one of the diseases stays uncovered
+        List<VaccineType> plan = planner.plan(diseases);
+        assertEquals(1, plan.size());
+        assertCoversEachDiseaseOnce(diseases, plan);
+        //and nothing may protect against a disease that wasn't chosen
+        assertTrue(planner.plan(List.of(diseases.get(0))).isEmpty());
+    }
+
+    @Test
+    void fallsBackToTheBestPlanFoundWithinTheNodeBudget() {
+        //every pair of 40 diseases has its own combination: far more partial plans than the budget allows
+        List<Disease> diseases = diseases(40);
+        List<VaccineType> vaccines = new ArrayList<>();
+        Map<Disease, VaccineType> defaults = new HashMap<>();
+        for (int i = 0; i < diseases.size(); i++) {
+            VaccineType single = new VaccineType.Builder().withDisease(diseases.get(i)).create("single " + i);
+            defaults.put(diseases.get(i), single);
+            vaccines.add(single);
+            for (int j = i + 1; j < diseases.size(); j++) {
+                vaccines.add(new VaccineType.Builder().withDisease(diseases.get(i), diseases.get(j))
+                        .create("pair " + i + "-" + j));
+            }
+        }
+        VaccineCoverPlanner planner = new VaccineCoverPlanner(vaccines, diseases, defaults);
+
+        List<VaccineType> plan = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> planner.plan(diseases));
+        assertCoversEachDiseaseOnce(diseases, plan);
+        assertEquals(diseases.size() / 2, plan.size());
+    }
+
+    private static List<Disease> diseases(int count) {
+        List<Disease> diseases = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            diseases.add(new Disease("d" + i, Recommendation.MANDATORY));
+        }
+        return diseases;
+    }
+
+    private static void assertCoversEachDiseaseOnce(List<Disease> chosen, List<VaccineType> plan) {
+        Set<Disease> covered = new HashSet<>();
+        for (VaccineType vaccine : plan) {
+            for (Disease disease : vaccine.getDisease()) {
+                assertTrue(chosen.contains(disease), disease + " wasn't chosen");
+                assertTrue(covered.add(disease), disease + " is covered twice");
+            }
+        }
+    }
+
+    /**
+     * The cost the planner minimizes: uncovered diseases first, then injections, then non-default vaccines.
+     */
+    private static long cost(List<Disease> chosen, List<VaccineType> plan, Map<Disease, VaccineType> defaults) {
+        int covered = 0;
+        int nonDefault = 0;
+        for (VaccineType vaccine : plan) {
+            covered += vaccine.getDisease().size();
+            boolean isDefault = false;
+            for (Disease disease : vaccine.getDisease()) {
+                isDefault |= defaults.get(disease) == vaccine;
+            }
+            nonDefault += isDefault ? 0 : 1;
+        }
+        return (chosen.size() - covered) * 10_000L + plan.size() * 100L + nonDefault;
+    }
+
+    private static long bruteForce(List<VaccineType> vaccines, List<Disease> chosen,
+                                   Map<Disease, VaccineType> defaults) {
+        long best = Long.MAX_VALUE;
+        for (int subset = 0; subset < 1 << vaccines.size(); subset++) {
+            List<VaccineType> plan = new ArrayList<>();
+            Set<Disease> covered = new HashSet<>();
+            boolean valid = true;
+            for (int i = 0; i < vaccines.size() && valid; i++) {
+                if ((subset & 1 << i) != 0) {
+                    plan.add(vaccines.get(i));
+                    for (Disease disease : vaccines.get(i).getDisease()) {
+                        valid &= chosen.contains(disease) && covered.add(disease);
+                    }
+                }
+            }
+            if (valid) {
+                best = Math.min(best, cost(chosen, plan, defaults));
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,86 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.MicroBenchmark;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures how the load time and the retained heap of a {@link JsonFileVaccineSource} grow with the size of the
+ * catalog. Both should grow linearly; the parser itself only needs its fixed buffer.
+ */
+@EnabledIfSystemProperty(named = MicroBenchmark.ENABLED_PROPERTY, matches = "true")
+class JsonFileVaccineSourceBenchmark {
+
+    private static final int[] CATALOG_SIZES = {100, 1_000, 10_000, 100_000};
+
+    private static final int ROUNDS = 7;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadTimeAndHeapByCatalogSize() throws IOException {
+        System.out.printf("%10s %12s %14s %14s %12s%n", "vaccines", "file KiB", "best load ms", "retained KiB",
+                "bytes/vacc.");
+        for (int size : CATALOG_SIZES) {
+            Path path = directory.resolve("catalog-" + size + ".json");
+            writeCatalog(path, size);
+
+            long best = Long.MAX_VALUE;
+            long[] retained = new long[ROUNDS];
+            for (int round = 0; round < ROUNDS; round++) {
+                long before = usedHeap();
+                JsonFileVaccineSource source = new JsonFileVaccineSource(path);
+                retained[round] = usedHeap() - before;
+                best = Math.min(best, source.getLoadTimeNanos());
+                assertEquals(size, source.getVaccines().size());
+            }
+            //small catalogs are within the noise of the collector, the median is the least affected
+            Arrays.sort(retained);
+            long median = Math.max(0, retained[ROUNDS / 2]);
+            System.out.printf("%10d %12d %14.1f %14d %12d%n", size, Files.size(path) / 1024, best / 1e6,
+                    median / 1024, median / size);
+        }
+    }
+
+    /**
+     * Writes a catalog with one disease per ten vaccines, where every vaccine has a three-dose scheme.
+     */
+    private static void writeCatalog(Path path, int vaccines) throws IOException {
+        int diseases = Math.max(1, vaccines / 10);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\"diseases\": [\n");
+            for (int i = 0; i < diseases; i++) {
+                writer.write((i > 0 ? ",\n" : "") + "{\"name\": \"disease " + i
+                        + "\", \"recommendation\": \"RECOMMENDED\", \"defaultVaccine\": \"vaccine " + i * 10 + "\"}");
+            }
+            writer.write("],\n\"vaccines\": [\n");
+            for (int i = 0; i < vaccines; i++) {
+                writer.write((i > 0 ? ",\n" : "") + "{\"name\": \"vaccine " + i + "\", \"diseases\": [\"disease "
+                        + i / 10 + "\"], \"altNames\": [\"V" + i + " 1\", \"V" + i + " 2\", \"V" + i + " 3\"], "
+                        + "\"tags\": [\"INJECTION\"], \"description\": \"Vaccine number " + i + "\", "
+                        + "\"scheme\": {\"doses\": 3, \"minOffsets\": [42, 28, 180], "
+                        + "\"recommendedOffsets\": [[42, 60], [28, 42], [180, 365]], \"maxAge\": 2190}}");
+            }
+            writer.write("]}\n");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,137 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.Recommendation;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonFileVaccineSourceTest {
+
+    private static final String DISEASES = """
+            "diseases": [
+              {"name": "Measles", "recommendation": "MANDATORY", "defaultVaccine": "MMR"},
+              {"name": "Mumps", "unknown": {"nested": [1, 2]}}
+            ]""";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void buildsTheWholeCatalog() throws IOException {
+        JsonFileVaccineSource source = load("""
+                {
+                  "version": 3,
+                  %s,
+                  "vaccines": [
+                    {
+                      "name": "MMR",
+                      "diseases": ["Measles", "Mumps"],
+                      "altNames": ["MMR 1", "MMR 2"],
+                      "tags": ["INJECTION", "LIVE"],
+                      "description": "Measles, mumps \\u0026 rubella",
+                      "scheme": {
+                        "doses": 2,
+                        "minOffsets": [365, 28],
+                        "recommendedOffsets": [[395, 485], null],
+                        "maxAge": null
+                      }
+                    },
+                    {"name": "Plain"}
+                  ]
+                }""".formatted(DISEASES));
+
+        List<Disease> diseases = source.getDiseases();
+        assertEquals(2, diseases.size());
+        assertEquals(Recommendation.MANDATORY, diseases.get(0).getRecommendation());
+        assertEquals(Recommendation.OPTIONAL, diseases.get(1).getRecommendation());
+
+        VaccineType mmr = source.getVaccines().get(0);
+        assertEquals(Map.of(diseases.get(0), mmr), source.getDefaultVaccines());
+        assertEquals(diseases, mmr.getDisease());
+        assertEquals(List.of("MMR 1", "MMR 2"), mmr.getAltNames());
+        assertEquals(List.of(VaccTag.INJECTION, VaccTag.LIVE), mmr.getTags());
+        assertEquals("Measles, mumps & rubella", mmr.getDescription());
+        VaccineScheme scheme = mmr.getVaccineScheme();
+        assertEquals(2, scheme.getNumberOfDoses());
+        assertEquals(Map.of(1, 365, 2, 28), scheme.getMinOffsets());
+        assertArrayEquals(new Integer[]{395, 485}, scheme.getRecommendedOffsets().get(1));
+        assertEquals(Integer.MAX_VALUE, scheme.getMaxAge());
+
+        assertEquals("Plain", source.getVaccines().get(1).getName());
+        assertTrue(source.getLoadTimeNanos() > 0);
+    }
+
+    @Test
+    void takesTheNumberOfDosesFromTheOffsetsIfMissing() throws IOException {
+        JsonFileVaccineSource source = load("""
+                {"vaccines": [{"name": "A", "scheme": {"minOffsets": [0, 30, 60], "maxAge": 730}}]}""");
+
+        VaccineScheme scheme = source.getVaccines().get(0).getVaccineScheme();
+        assertEquals(3, scheme.getNumberOfDoses());
+        assertEquals(730, scheme.getMaxAge());
+    }
+
+    @Test
+    void rejectsUnknownDiseases() {
+        assertInvalid("Unknown disease: Rubella", """
+                {%s, "vaccines": [{"name": "MMR", "diseases": ["Measles", "Rubella"]}]}""".formatted(DISEASES));
+    }
+
+    @Test
+    void rejectsUnknownDefaultVaccines() {
+        assertInvalid("Unknown default vaccine: MMR", """
+                {%s, "vaccines": [{"name": "Other", "diseases": ["Measles"]}]}""".formatted(DISEASES));
+    }
+
+    @Test
+    void rejectsDuplicateDiseases() {
+        assertInvalid("Duplicate disease: Mumps", """
+                {%s, "vaccines": []}""".formatted(DISEASES.replace("Measles", "Mumps")));
+    }
+
+    @Test
+    void rejectsAltNamesThatDontMatchTheDoses() {
+        assertInvalid("has 1 alt names for 2 doses", """
+                {"vaccines": [{"name": "A", "altNames": ["A 1"], "scheme": {"doses": 2}}]}""");
+    }
+
+    @Test
+    void rejectsMalformedMembers() {
+        assertInvalid("Expected a number, got STRING", """
+                {"vaccines": [{"name": "A", "scheme": {"doses": "2"}}]}""");
+        assertInvalid("Expected a number, got BEGIN_ARRAY", """
+                {"vaccines": [{"name": "A", "scheme": {"maxAge": [1]}}]}""");
+        assertInvalid("Vaccine without a name", """
+                {"vaccines": [{"name": null}]}""");
+        assertInvalid("SOMETIMES", """
+                {"diseases": [{"name": "A", "recommendation": "SOMETIMES"}]}""");
+        assertInvalid("Unexpected content after the document", """
+                {"vaccines": []} []""");
+    }
+
+    private JsonFileVaccineSource load(String json) throws IOException {
+        Path path = directory.resolve("catalog.json");
+        Files.writeString(path, json, StandardCharsets.UTF_8);
+        return new JsonFileVaccineSource(path);
+    }
+
+    private void assertInvalid(String message, String json) {
+        IOException e = assertThrows(IOException.class, () -> load(json));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+}
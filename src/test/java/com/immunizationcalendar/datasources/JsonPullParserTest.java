@@ -0,0 +1,127 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.datasources.JsonPullParser.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonPullParserTest {
+
+    @Test
+    void readsEveryKindOfToken() throws IOException {
+        JsonPullParser parser = parser("{\"a\": [1, -2.5e3, \"x\", true, false, null], \"b\": {}}");
+
+        assertEquals(List.of("BEGIN_OBJECT", "NAME a", "BEGIN_ARRAY", "NUMBER 1", "NUMBER -2.5e3", "STRING x", "TRUE",
+                "FALSE", "NULL", "END_ARRAY", "NAME b", "BEGIN_OBJECT", "END_OBJECT", "END_OBJECT", "END_DOCUMENT"),
+                tokens(parser));
+        assertEquals(Token.END_DOCUMENT, parser.next());
+    }
+
+    @Test
+    void decodesEscapes() throws IOException {
+        JsonPullParser parser = parser("\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u0041\\u017C\\u00e9\"");
+
+        assertEquals(Token.STRING, parser.next());
+        assertEquals("\"\\/\b\f\n\r\tA\u017C\u00E9", parser.getString());
+    }
+
+    @Test
+    void readsStringsAcrossTheBufferBoundary() throws IOException {
+        //the buffer holds 8192 characters; move the escape across its end one character at a time
+        for (int padding = 8180; padding < 8200; padding++) {
+            String plain = "x".repeat(padding);
+            JsonPullParser parser = parser("[\"" + plain + "\\u017Cy\", \"z\"]");
+
+            assertEquals(Token.BEGIN_ARRAY, parser.next());
+            assertEquals(Token.STRING, parser.next());
+            assertEquals(plain + "\u017Cy", parser.getString(), "padding " + padding);
+            assertEquals(Token.STRING, parser.next());
+            assertEquals("z", parser.getString());
+        }
+    }
+
+    @Test
+    void worksWithReadersThatReturnOneCharacterAtATime() throws IOException {
+        String json = "{\"name\": \"a\\nb\", \"values\": [12, 34]}";
+        Reader trickle = new StringReader(json) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+
+        assertEquals(tokens(parser(json)), tokens(new JsonPullParser(trickle)));
+    }
+
+    @Test
+    void skipsNestedValues() throws IOException {
+        JsonPullParser parser = parser("{\"skipped\": {\"a\": [1, {\"b\": [[], {}]}], \"c\": null}, "
+                + "\"scalar\": 5, \"kept\": [7]}");
+
+        assertEquals(Token.BEGIN_OBJECT, parser.next());
+        assertEquals(Token.NAME, parser.next());
+        parser.skipValue();
+        assertEquals(Token.NAME, parser.next());
+        assertEquals("scalar", parser.getString());
+        parser.skipValue();
+        assertEquals(Token.NAME, parser.next());
+        assertEquals("kept", parser.getString());
+        assertEquals(Token.BEGIN_ARRAY, parser.next());
+        assertEquals(Token.NUMBER, parser.next());
+        assertEquals(7, parser.getInt());
+    }
+
+    @Test
+    void rejectsContentAfterTheDocument() throws IOException {
+        JsonPullParser parser = parser("{}\n {}");
+        assertEquals(Token.BEGIN_OBJECT, parser.next());
+        assertEquals(Token.END_OBJECT, parser.next());
+
+        IOException e = assertThrows(IOException.class, parser::next);
+        assertTrue(e.getMessage().contains("line 2, column 2"), e.getMessage());
+    }
+
+    @Test
+    void rejectsMalformedDocuments() {
+        for (String json : List.of("{\"a\" 1}", "{\"a\": 1,}", "[1 2]", "\"unterminated", "\"a\nb\"", "\"\\x\"",
+                "\"\\u12G4\"", "nul", "[", "{\"a\": }", "{1: 2}")) {
+            assertThrows(IOException.class, () -> tokens(parser(json)), json);
+        }
+    }
+
+    @Test
+    void onlyReadsIntegersAsInts() throws IOException {
+        JsonPullParser parser = parser("[1.5, \"1\", 2147483648]");
+        parser.next();
+
+        parser.next();
+        assertThrows(IOException.class, parser::getInt);
+        parser.next();
+        assertThrows(IOException.class, parser::getInt);
+        parser.next();
+        assertThrows(IOException.class, parser::getInt);
+    }
+
+    private static JsonPullParser parser(String json) {
+        return new JsonPullParser(new StringReader(json));
+    }
+
+    private static List<String> tokens(JsonPullParser parser) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = parser.next();
+            boolean hasText = token == Token.NAME || token == Token.STRING || token == Token.NUMBER;
+            tokens.add(hasText ? token + " " + parser.getString() : token.toString());
+        } while (token != Token.END_DOCUMENT);
+        return tokens;
+    }
+}
@@ -0,0 +1,155 @@
+package com.immunizationcalendar.datasources;
+
+import com.immunizationcalendar.DataProvider;
+import com.immunizationcalendar.model.Disease;
+import com.immunizationcalendar.model.Recommendation;
+import com.immunizationcalendar.model.VaccTag;
+import com.immunizationcalendar.model.VaccineScheme;
+import com.immunizationcalendar.model.VaccineType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotVaccineSourceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopensTheCompiledModel() throws IOException {
+        IVaccineSourceNew catalog = catalog();
+        SnapshotVaccineSource snapshot = compileAndOpen(catalog);
+        snapshot.verify();
+
+        assertEquals(describe(catalog), describe(snapshot));
+    }
+
+    @Test
+    void reopensTheBuiltInCatalog() throws IOException {
+        IVaccineSourceNew catalog = NewFakeVaccineSource.getInstance();
+
+        assertEquals(describe(catalog), describe(compileAndOpen(catalog)));
+    }
+
+    @Test
+    void decodesNothingUntilTheCatalogIsUsed() throws IOException {
+        SnapshotVaccineSource snapshot = compileAndOpen(catalog());
+
+        DataProvider dataProvider = new DataProvider(snapshot);
+        assertEquals(0, snapshot.getDecodedVaccines());
+        assertEquals("MMR", dataProvider.getVaccines().get(0).getName());
+        assertEquals(1, snapshot.getDecodedVaccines());
+
+        //the registry needs every vaccine
+        assertEquals(2, dataProvider.getRegistry().getPosition(snapshot.getVaccines().get(2)));
+        assertEquals(3, snapshot.getDecodedVaccines());
+    }
+
+    @Test
+    void onlyVerifyReadsThePayload() throws IOException {
+        Path path = directory.resolve("catalog.snapshot");
+        CatalogSnapshotCompiler.compile(catalog(), path);
+        byte[] bytes = Files.readAllBytes(path);
+        //the last byte belongs to a vaccine record, which opening the snapshot doesn't look at
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+
+        SnapshotVaccineSource snapshot = new SnapshotVaccineSource(path);
+        IOException e = assertThrows(IOException.class, snapshot::verify);
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedFilesWhenOpened() throws IOException {
+        Path path = directory.resolve("catalog.snapshot");
+        CatalogSnapshotCompiler.compile(catalog(), path);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertThrows(IOException.class, () -> new SnapshotVaccineSource(path));
+        Files.write(path, Arrays.copyOf(bytes, 10));
+        assertThrows(IOException.class, () -> new SnapshotVaccineSource(path));
+    }
+
+    private SnapshotVaccineSource compileAndOpen(IVaccineSourceNew catalog) throws IOException {
+        Path path = directory.resolve("catalog.snapshot");
+        CatalogSnapshotCompiler.compile(catalog, path);
+        return new SnapshotVaccineSource(path);
+    }
+
+    /**
+     * A small catalog that uses every part of the format.
+     */
+    private static IVaccineSourceNew catalog() {
+        Disease measles = new Disease("Measles", Recommendation.MANDATORY);
+        Disease mumps = new Disease("Mumps", Recommendation.RECOMMENDED);
+        Disease rabies = new Disease("Rabies żółw", Recommendation.OPTIONAL);
+
+        Map<Integer, Integer[]> recommended = Map.of(1, new Integer[]{365, 485}, 2, new Integer[]{null, 2190});
+        VaccineType mmr = new VaccineType.Builder()
+                .withDisease(measles, mumps)
+                .withTags(VaccTag.INJECTION, VaccTag.LIVE)
+                .withDescription("Measles and mumps")
+                .withAltNames("MMR 1", "MMR 2")
+                .withVaccineSceheme(new VaccineScheme(2, new HashMap<>(Map.of(1, 365, 2, 28)),
+                        new HashMap<>(recommended), 4380))
+                .create("MMR");
+        VaccineType measlesOnly = new VaccineType.Builder().withDisease(measles).create("Measles only");
+        VaccineType nothing = new VaccineType.Builder().create("Nothing");
+        List<VaccineType> vaccines = List.of(mmr, measlesOnly, nothing);
+        List<Disease> diseases = List.of(measles, mumps, rabies);
+        Map<Disease, VaccineType> defaultVaccines = Map.of(measles, measlesOnly, mumps, mmr);
+        return new IVaccineSourceNew() {
+            @Override
+            public List<VaccineType> getVaccines() {
+                return vaccines;
+            }
+
+            @Override
+            public List<Disease> getDiseases() {
+                return diseases;
+            }
+
+            @Override
+            public Map<Disease, VaccineType> getDefaultVaccines() {
+                return defaultVaccines;
+            }
+        };
+    }
+
+    /**
+     * Describes a catalog by value, so that catalogs made of different objects can be compared.
+     */
+    private static List<String> describe(IVaccineSourceNew source) {
+        List<String> result = new ArrayList<>();
+        for (Disease disease : source.getDiseases()) {
+            VaccineType defaultVaccine = source.getDefaultVaccines().get(disease);
+            result.add(disease.getName() + " " + disease.getRecommendation() + " default "
+                    + (defaultVaccine == null ? null : defaultVaccine.getName()));
+        }
+        for (VaccineType vaccine : source.getVaccines()) {
+            List<String> diseases = new ArrayList<>();
+            vaccine.getDisease().forEach(disease -> diseases.add(disease.getName()));
+            VaccineScheme scheme = vaccine.getVaccineScheme();
+            Map<Integer, List<Integer>> recommended = new TreeMap<>();
+            scheme.getRecommendedOffsets().forEach((dose, range) -> recommended.put(dose, Arrays.asList(range)));
+            result.add(vaccine.getName() + " " + diseases + " " + vaccine.getTags() + " " + vaccine.getDescription()
+                    + " " + vaccine.getAltNames() + " " + scheme.getNumberOfDoses() + " "
+                    + new TreeMap<>(scheme.getMinOffsets()) + " " + recommended + " " + scheme.getMaxAge());
+        }
+        return result;
+    }
+}
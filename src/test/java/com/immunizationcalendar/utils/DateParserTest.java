@@ -0,0 +1,75 @@
+package com.immunizationcalendar.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DateParserTest {
+
+    @Test
+    void parsesEverySource() {
+        String text = "on 2024-02-29!";
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        assertEquals(20240229, DateParser.parse("2024-02-29"));
+        assertEquals(20240229, DateParser.parse(text, 3));
+        assertEquals(20240229, DateParser.parse(text.toCharArray(), 3));
+        assertEquals(20240229, DateParser.parse(bytes, 3));
+        assertEquals(20240229, DateParser.parse(buffer, 3));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void errorsAreNegativeAndPointAtTheOffendingCharacter() {
+        assertError(4, DateParser.parse("2024/02/29"));
+        assertError(0, DateParser.parse("x024-02-29"));
+        assertError(9, DateParser.parse("2024-02-2x"));
+        assertError(8, DateParser.parse("2024-02-"));
+        assertError(0, DateParser.parse(""));
+    }
+
+    @Test
+    void errorPositionsAreRelativeToTheSource() {
+        char[] chars = "date: 2024-13-01".toCharArray();
+        assertError(11, DateParser.parse(chars, 6));
+        assertError(12, DateParser.parse("date: 2024-1x-01", 6));
+        assertError(13, DateParser.parse("date: 2024-01", 6));
+    }
+
+    @Test
+    void rejectsDaysThatDontExist() {
+        assertError(5, DateParser.parse("2024-00-10"));
+        assertError(5, DateParser.parse("2024-13-10"));
+        assertError(8, DateParser.parse("2024-04-31"));
+        assertError(8, DateParser.parse("2023-02-29"));
+        assertError(8, DateParser.parse("2024-02-00"));
+        assertTrue(DateParser.isValid(DateParser.parse("2000-02-29")));
+        assertFalse(DateParser.isValid(DateParser.parse("1900-02-29")));
+    }
+
+    @Test
+    void rejectsTrailingCharactersOnlyWhenParsingAWholeSequence() {
+        assertError(10, DateParser.parse("2024-02-29T10:00"));
+        assertEquals(20240229, DateParser.parse("2024-02-29T10:00", 0));
+    }
+
+    @Test
+    void tinyDateReportsTheErrorPosition() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> TinyDate.of("2024-02-30"));
+        assertTrue(e.getMessage().contains("index 8"), e.getMessage());
+    }
+
+    private static void assertError(int expectedPosition, int result) {
+        assertTrue(result < 0, "Expected an error code, got " + result);
+        assertFalse(DateParser.isValid(result));
+        assertEquals(expectedPosition, DateParser.errorPosition(result));
+    }
+}
@@ -0,0 +1,141 @@
+package com.immunizationcalendar.utils;
+
+import com.immunizationcalendar.MicroBenchmark;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the epoch-day {@link TinyDate} with the original, string-based implementation (kept here as
+ * {@link LegacyDate}), which parsed dates with <code>substring</code> and added days month by month.
+ */
+@EnabledIfSystemProperty(named = MicroBenchmark.ENABLED_PROPERTY, matches = "true")
+class TinyDateBenchmark {
+
+    private static final int OPERATIONS = 200_000;
+
+    /**
+     * Offsets used by the benchmark, up to ten years - about the range of a vaccination calendar.
+     */
+    private static final int[] offsets = new int[OPERATIONS];
+
+    private static final String[] dates = new String[OPERATIONS];
+
+    @BeforeAll
+    static void prepare() {
+        TinyDate start = TinyDate.of("2020-01-01");
+        for (int i = 0; i < OPERATIONS; i++) {
+            offsets[i] = i * 7919 % 3650;
+            dates[i] = start.addDays(i % 3650).toString();
+        }
+        //both implementations have to agree before it makes sense to compare them
+        for (int i = 0; i < OPERATIONS; i += 97) {
+            assertEquals(new LegacyDate(dates[i]).addDays(offsets[i]).toString(),
+                    TinyDate.of(dates[i]).addDays(offsets[i]).toString());
+        }
+    }
+
+    @Test
+    void addDays() {
+        LegacyDate legacyStart = new LegacyDate("2020-01-01");
+        TinyDate start = TinyDate.of("2020-01-01");
+
+        MicroBenchmark.measure("addDays, string-based", OPERATIONS,
+                i -> legacyStart.addDays(offsets[i]).day);
+        MicroBenchmark.measure("addDays, epoch day", OPERATIONS,
+                i -> start.addDays(offsets[i]).toEpochDay());
+    }
+
+    @Test
+    void parseAddAndFormat() {
+        MicroBenchmark.measure("parse + addDays + format, string-based", OPERATIONS,
+                i -> new LegacyDate(dates[i]).addDays(offsets[i]).toString().length());
+        MicroBenchmark.measure("parse + addDays + format, epoch day", OPERATIONS,
+                i -> TinyDate.of(dates[i]).addDays(offsets[i]).toString().length());
+    }
+
+    @Test
+    void compare() {
+        LegacyDate[] legacyDates = new LegacyDate[OPERATIONS];
+        TinyDate[] tinyDates = new TinyDate[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            legacyDates[i] = new LegacyDate(dates[i]);
+            tinyDates[i] = TinyDate.of(dates[i]);
+        }
+
+        MicroBenchmark.measure("after, string-based", OPERATIONS,
+                i -> legacyDates[i].after(legacyDates[OPERATIONS - 1 - i]) ? 1 : 0);
+        MicroBenchmark.measure("after, epoch day", OPERATIONS,
+                i -> tinyDates[i].after(tinyDates[OPERATIONS - 1 - i]) ? 1 : 0);
+    }
+
+    /**
+     * The original TinyDate, before epoch days were introduced.
+     */
+    private static final class LegacyDate {
+
+        private static final int[] DAYS_IN_MONTH = {0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+        private final int year;
+        private final int month;
+        private final int day;
+
+        LegacyDate(String date) {
+            this.year = Integer.parseInt(date.substring(0, 4));
+            this.month = Integer.parseInt(date.substring(5, 7));
+            this.day = Integer.parseInt(date.substring(8, 10));
+        }
+
+        LegacyDate(int year, int month, int day) {
+            this.year = year;
+            this.month = month;
+            this.day = day;
+        }
+
+        LegacyDate addDays(int offset) {
+            int y = year;
+            int m = month;
+            int d = day;
+
+            int daysLeft = daysIn(m, y) - d;
+            while (offset > daysLeft) {
+                offset -= daysLeft;
+                d = 0;
+                if (m == 12) {
+                    m = 1;
+                    y++;
+                } else {
+                    m++;
+                }
+                daysLeft = daysIn(m, y) - d;
+            }
+            return new LegacyDate(y, m, d + offset);
+        }
+
+        boolean after(LegacyDate otherDate) {
+            return asNumber() > otherDate.asNumber();
+        }
+
+        int asNumber() {
+            return year * 10000 + month * 100 + day;
+        }
+
+        @Override
+        public String toString() {
+            return year + "-" + fixLength(month) + "-" + fixLength(day);
+        }
+
+        private static int daysIn(int month, int year) {
+            return month == 2 && TinyDate.isLeapYear(year) ? 29 : DAYS_IN_MONTH[month];
+        }
+
+        private static String fixLength(int dateFragment) {
+            if (dateFragment < 10) {
+                return "0" + dateFragment;
+            }
+            return "" + dateFragment;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.immunizationcalendar.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TinyDateTest {
+
+    private static final int FIRST_EPOCH_DAY = (int) LocalDate.of(1600, 1, 1).toEpochDay();
+    private static final int LAST_EPOCH_DAY = (int) LocalDate.of(2400, 12, 31).toEpochDay();
+
+    @Test
+    void epochStartsOn1970() {
+        assertEquals(0, TinyDate.of("1970-01-01").toEpochDay());
+        assertEquals(-1, TinyDate.of("1969-12-31").toEpochDay());
+        assertEquals("1970-01-01", TinyDate.ofEpochDay(0).toString());
+    }
+
+    @Test
+    void epochDaysRoundTripLikeLocalDate() {
+        for (int epochDay = FIRST_EPOCH_DAY; epochDay <= LAST_EPOCH_DAY; epochDay++) {
+            LocalDate expected = LocalDate.ofEpochDay(epochDay);
+            TinyDate date = TinyDate.ofEpochDay(epochDay);
+
+            assertEquals(expected.toString(), date.toString());
+            assertEquals(epochDay, date.toEpochDay());
+            assertEquals(epochDay, TinyDate.toEpochDay(expected.getYear(), expected.getMonthValue(),
+                    expected.getDayOfMonth()));
+        }
+    }
+
+    @Test
+    void stringsRoundTrip() {
+        for (int epochDay = FIRST_EPOCH_DAY; epochDay <= LAST_EPOCH_DAY; epochDay += 7) {
+            String iso = LocalDate.ofEpochDay(epochDay).toString();
+            TinyDate date = TinyDate.of(iso);
+
+            assertEquals(iso, date.toString());
+            assertEquals(epochDay, date.toEpochDay());
+        }
+    }
+
+    @Test
+    void addDaysMatchesLocalDate() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            int epochDay = FIRST_EPOCH_DAY + random.nextInt(LAST_EPOCH_DAY - FIRST_EPOCH_DAY - 20_000) + 10_000;
+            int offset = random.nextInt(20_001) - 10_000;
+
+            TinyDate moved = TinyDate.ofEpochDay(epochDay).addDays(offset);
+            assertEquals(LocalDate.ofEpochDay(epochDay).plusDays(offset).toString(), moved.toString());
+        }
+    }
+
+    @Test
+    void daysBetweenMatchesLocalDate() {
+        Random random = new Random(2);
+        for (int i = 0; i < 100_000; i++) {
+            int from = FIRST_EPOCH_DAY + random.nextInt(LAST_EPOCH_DAY - FIRST_EPOCH_DAY);
+            int to = FIRST_EPOCH_DAY + random.nextInt(LAST_EPOCH_DAY - FIRST_EPOCH_DAY);
+
+            long expected = ChronoUnit.DAYS.between(LocalDate.ofEpochDay(from), LocalDate.ofEpochDay(to));
+            assertEquals(expected, TinyDate.ofEpochDay(from).daysBetween(TinyDate.ofEpochDay(to)));
+        }
+    }
+
+    @Test
+    void leapYears() {
+        assertTrue(TinyDate.isLeapYear(2000));
+        assertTrue(TinyDate.isLeapYear(2024));
+        assertFalse(TinyDate.isLeapYear(1900));
+        assertFalse(TinyDate.isLeapYear(2023));
+
+        assertEquals(29, TinyDate.lengthOfMonth(2024, 2));
+        assertEquals(28, TinyDate.lengthOfMonth(2100, 2));
+        assertEquals(0, TinyDate.lengthOfMonth(2024, 13));
+        assertEquals("2024-03-01", TinyDate.of("2024-02-28").addDays(2).toString());
+        assertEquals("2023-03-02", TinyDate.of("2023-02-28").addDays(2).toString());
+    }
+
+    @Test
+    void equalDatesAreEqualHoweverTheyWereMade() {
+        TinyDate parsed = TinyDate.of("2024-02-29");
+        TinyDate computed = TinyDate.of("2024-02-28").addDays(1);
+
+        assertEquals(parsed, computed);
+        assertEquals(parsed.hashCode(), computed.hashCode());
+        assertEquals(parsed.asNumber(), computed.asNumber());
+        assertTrue(TinyDate.of("2024-03-01").after(parsed));
+        assertFalse(parsed.after(computed));
+    }
+
+    @Test
+    void supportedDatesAreCanonical() {
+        TinyDate date = TinyDate.of(2024, 2, 29);
+
+        assertSame(date, TinyDate.of("2024-02-29"));
+        assertSame(date, TinyDate.ofNumber(20240229));
+        assertSame(date, TinyDate.of(2024, 1, 1).addDays(59));
+        assertSame(date, TinyDate.ofEpochDay(date.toEpochDay()));
+        assertSame(TinyDate.of(1900, 1, 1), TinyDate.of("1900-01-01"));
+        assertSame(TinyDate.of(3000, 12, 31), TinyDate.of("3000-12-31"));
+    }
+
+    @Test
+    void datesOutsideTheCacheAreEqualByValue() {
+        TinyDate first = TinyDate.of(1899, 12, 31);
+        TinyDate second = TinyDate.of(1900, 1, 1).addDays(-1);
+
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals("1899-12-31", second.toString());
+        assertEquals(TinyDate.of(3001, 1, 1), TinyDate.of(3000, 12, 31).addDays(1));
+    }
+
+    @Test
+    void daysThatDontExistAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.of(2023, 2, 29));
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.of(2023, 2, 30));
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.of(2023, 4, 31));
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.of(2023, 13, 1));
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.of(2023, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.of(1800, 2, 30));
+        assertThrows(IllegalArgumentException.class, () -> TinyDate.ofNumber(20230230));
+    }
+
+    @Test
+    void everyThreadGetsTheSameInstance() throws InterruptedException {
+        //a year nobody asked for yet, so that the threads race to build it
+        TinyDate[] seen = new TinyDate[8];
+        Thread[] threads = new Thread[seen.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> seen[index] = TinyDate.of(2987, 6, 15));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (TinyDate date : seen) {
+            assertSame(TinyDate.of(2987, 6, 15), date);
+        }
+    }
+}